@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import com.github.dockerjava.api.model.AuthConfig;
+import com.microsoft.jenkins.exceptions.AzureCloudException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DockerCommandBenchmark {
+
+    private final DockerCommand command = new DockerCommand() {
+    };
+    private DockerBuildInfo dockerHubBuildInfo;
+    private DockerBuildInfo acrBuildInfo;
+
+    @Setup
+    public void setUp() {
+        dockerHubBuildInfo = new DockerBuildInfo()
+                .withDockerImageTag("1")
+                .withLinuxFxVersion("DOCKER|someUser/sub1/sub2/mysql:anyTag")
+                .withAuthConfig(new AuthConfig()
+                        .withRegistryAddress(AuthConfig.DEFAULT_SERVER_ADDRESS)
+                        .withUsername("someUser")
+                        .withPassword("somePassword"));
+        acrBuildInfo = new DockerBuildInfo()
+                .withDockerImageTag("1")
+                .withLinuxFxVersion("DOCKER|someAcr.azurecr.io/someUser/mysql:anyTag")
+                .withAuthConfig(new AuthConfig()
+                        .withRegistryAddress("https://someAcr.azurecr.io")
+                        .withUsername("someUser")
+                        .withPassword("somePassword"));
+    }
+
+    @Benchmark
+    public String getFullImageNameDockerHub() throws AzureCloudException {
+        return command.getFullImageName(dockerHubBuildInfo);
+    }
+
+    @Benchmark
+    public String getFullImageNameAcr() throws AzureCloudException {
+        return command.getFullImageName(acrBuildInfo);
+    }
+
+    @Benchmark
+    public String imageAndTag() throws AzureCloudException {
+        return command.imageAndTag(acrBuildInfo);
+    }
+
+    @Benchmark
+    public AzureDockerClientConfig createDefaultConfigBuilder() {
+        return AzureDockerClientConfig.createDefaultConfigBuilder()
+                .withRegistryUrl("https://someAcr.azurecr.io")
+                .withRegistryUsername("someUser")
+                .withRegistryPassword("somePassword")
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import com.microsoft.azure.management.appservice.PublishingProfile;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * End-to-end FTP deployment of a synthetic tree to an embedded FTP server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FTPDeployBenchmark {
+
+    private static final String FTP_USER = "user";
+    private static final String FTP_PASSWORD = "password";
+
+    @Param({"1000", "10000", "100000"})
+    private int fileCount;
+
+    @Param({"1", "4"})
+    private int connections;
+
+    private SyntheticWorkspace workspace;
+    private FakeFtpServer ftpServer;
+    private FTPDeployCommand command;
+    private FTPDeployCommand.IFTPDeployCommandData commandData;
+
+    @Setup
+    public void setUp() throws IOException {
+        workspace = SyntheticWorkspace.create(fileCount);
+
+        final UnixFakeFileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/site/wwwroot"));
+        ftpServer = new FakeFtpServer();
+        ftpServer.setServerControlPort(0);
+        ftpServer.addUserAccount(new UserAccount(FTP_USER, FTP_PASSWORD, "/"));
+        ftpServer.setFileSystem(fileSystem);
+        ftpServer.start();
+
+        final PublishingProfile pubProfile = mock(PublishingProfile.class);
+        when(pubProfile.ftpUrl()).thenReturn("ftp://localhost:" + ftpServer.getServerControlPort() + "/site/wwwroot");
+        when(pubProfile.ftpUsername()).thenReturn(FTP_USER);
+        when(pubProfile.ftpPassword()).thenReturn(FTP_PASSWORD);
+
+        command = new FTPDeployCommand();
+        commandData = mock(FTPDeployCommand.IFTPDeployCommandData.class);
+        when(commandData.getListener()).thenReturn(TaskListener.NULL);
+        when(commandData.getWorkspace()).thenReturn(new FilePath(workspace.getRoot()));
+        when(commandData.getPublishingProfile()).thenReturn(pubProfile);
+        when(commandData.getFtpTransferProfile()).thenReturn(new FTPTransferProfile());
+        when(commandData.getSourceDirectory()).thenReturn("site");
+        when(commandData.getTargetDirectory()).thenReturn("");
+        when(commandData.getFilePath()).thenReturn("**/*.txt");
+        when(commandData.getFtpConnections()).thenReturn(connections);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ftpServer.stop();
+        workspace.delete();
+    }
+
+    @Benchmark
+    public void deploy() {
+        command.execute(commandData);
+    }
+}
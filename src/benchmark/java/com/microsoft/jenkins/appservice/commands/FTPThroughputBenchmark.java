@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import com.microsoft.azure.management.appservice.PublishingProfile;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.apache.commons.io.FileUtils;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Upload of a single large file to an embedded FTP server, across transfer profiles. A zero buffer size stands for
+ * the commons-net default. Over loopback this measures the cost of the client side buffering only; the socket buffer
+ * sizes matter once there is latency on the link.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FTPThroughputBenchmark {
+
+    private static final String FTP_USER = "user";
+    private static final String FTP_PASSWORD = "password";
+
+    @Param({"16", "128"})
+    private int fileSizeMb;
+
+    @Param({"0", "65536", "1048576"})
+    private int bufferSize;
+
+    @Param({"0", "4194304"})
+    private int socketBufferSize;
+
+    private File workspace;
+    private FakeFtpServer ftpServer;
+    private FTPDeployCommand command;
+    private FTPDeployCommand.IFTPDeployCommandData commandData;
+
+    @Setup
+    public void setUp() throws IOException {
+        workspace = Files.createTempDirectory("azure-app-service-benchmark").toFile();
+        final byte[] content = new byte[fileSizeMb * 1024 * 1024];
+        new Random(0).nextBytes(content);
+        FileUtils.writeByteArrayToFile(new File(workspace, "app.war"), content);
+
+        final UnixFakeFileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/site/wwwroot"));
+        ftpServer = new FakeFtpServer();
+        ftpServer.setServerControlPort(0);
+        ftpServer.addUserAccount(new UserAccount(FTP_USER, FTP_PASSWORD, "/"));
+        ftpServer.setFileSystem(fileSystem);
+        ftpServer.start();
+
+        final PublishingProfile pubProfile = mock(PublishingProfile.class);
+        when(pubProfile.ftpUrl()).thenReturn("ftp://localhost:" + ftpServer.getServerControlPort() + "/site/wwwroot");
+        when(pubProfile.ftpUsername()).thenReturn(FTP_USER);
+        when(pubProfile.ftpPassword()).thenReturn(FTP_PASSWORD);
+
+        command = new FTPDeployCommand();
+        commandData = mock(FTPDeployCommand.IFTPDeployCommandData.class);
+        when(commandData.getListener()).thenReturn(TaskListener.NULL);
+        when(commandData.getWorkspace()).thenReturn(new FilePath(workspace));
+        when(commandData.getPublishingProfile()).thenReturn(pubProfile);
+        when(commandData.getTargetDirectory()).thenReturn("");
+        when(commandData.getFilePath()).thenReturn("app.war");
+        when(commandData.getFtpConnections()).thenReturn(1);
+        when(commandData.getFtpTransferProfile()).thenReturn(new FTPTransferProfile(bufferSize, socketBufferSize,
+                true, FTPTransferProfile.DEFAULT_CONNECT_TIMEOUT, FTPTransferProfile.DEFAULT_DATA_TIMEOUT,
+                FTPTransferProfile.DEFAULT_CONTROL_KEEP_ALIVE));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ftpServer.stop();
+        FileUtils.deleteDirectory(workspace);
+    }
+
+    @Benchmark
+    public void upload() {
+        command.execute(commandData);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.eclipse.jgit.transport.URIish;
+import org.jenkinsci.plugins.gitclient.Git;
+import org.jenkinsci.plugins.gitclient.GitClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end Git deployment of a synthetic tree to a local bare repository: fetch the deploy repository, commit the
+ * files with one of them changed, and push.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class GitDeployBenchmark {
+
+    private static final String FILES_PATTERN = "**/*.txt";
+
+    @Param({"1000", "10000", "100000"})
+    private int fileCount;
+
+    @Param({"true", "false"})
+    private boolean inMemoryGitCommit;
+
+    private SyntheticWorkspace workspace;
+    private File remote;
+    private File repo;
+    private GitClient git;
+    private int round;
+
+    @Setup
+    public void setUp() throws Exception {
+        workspace = SyntheticWorkspace.create(fileCount);
+        remote = workspace.newDirectory("remote");
+        Git.with(TaskListener.NULL, null).in(remote).using("jgit").getClient()
+                .init_().workspace(remote.getAbsolutePath()).bare(true).execute();
+
+        repo = workspace.newDirectory("repo");
+        git = Git.with(TaskListener.NULL, null).in(repo).using("jgit").getClient();
+
+        // First deployment, so that the benchmark measures redeploying a mostly unchanged tree
+        deploy();
+    }
+
+    @Setup(Level.Invocation)
+    public void changeFile() throws IOException {
+        workspace.touch(++round);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        workspace.delete();
+    }
+
+    @Benchmark
+    public void deploy() throws Exception {
+        final FilePath sourceDir = new FilePath(new File(workspace.getRoot(), "site"));
+        GitDeployCommand.prepareDeployRepository(git, new FilePath(repo), remote.getAbsolutePath(), TaskListener.NULL);
+
+        if (inMemoryGitCommit) {
+            GitDeployCommand.commitFiles(git, sourceDir, "", FILES_PATTERN, "deploy");
+        } else {
+            GitDeployCommand.copyAndAddFiles(git, new FilePath(repo), sourceDir, "", FILES_PATTERN);
+            git.commit("deploy");
+        }
+
+        git.push().to(new URIish(remote.getAbsolutePath())).execute();
+    }
+}
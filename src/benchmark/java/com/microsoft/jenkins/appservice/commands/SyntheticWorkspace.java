@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A workspace with a generated tree of small files, the same for every run so that results can be compared.
+ */
+final class SyntheticWorkspace {
+
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int FILE_SIZE = 1024;
+
+    private final File root;
+
+    private SyntheticWorkspace(File root) {
+        this.root = root;
+    }
+
+    static SyntheticWorkspace create(int fileCount) throws IOException {
+        final File root = Files.createTempDirectory("azure-app-service-benchmark").toFile();
+        final byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < fileCount; i++) {
+            final File file = new File(root, String.format("site/d%d/f%d.txt", i / FILES_PER_DIRECTORY, i));
+            content[0] = (byte) i;
+            FileUtils.writeByteArrayToFile(file, content);
+        }
+        return new SyntheticWorkspace(root);
+    }
+
+    File getRoot() {
+        return root;
+    }
+
+    File newDirectory(String name) throws IOException {
+        final File dir = new File(root.getParentFile(), root.getName() + "-" + name);
+        FileUtils.forceMkdir(dir);
+        return dir;
+    }
+
+    /**
+     * Change one file, so that there's always something new to deploy.
+     */
+    void touch(int round) throws IOException {
+        FileUtils.write(new File(root, "site/d0/f0.txt"), String.valueOf(round));
+    }
+
+    void delete() throws IOException {
+        FileUtils.deleteDirectory(root);
+        for (final File dir : root.getParentFile().listFiles()) {
+            if (dir.getName().startsWith(root.getName() + "-")) {
+                FileUtils.deleteDirectory(dir);
+            }
+        }
+    }
+}
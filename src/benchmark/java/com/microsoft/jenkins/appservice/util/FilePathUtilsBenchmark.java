@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.util;
+
+import hudson.FilePath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilePathUtilsBenchmark {
+
+    private FilePath dir;
+    private FilePath file;
+
+    @Setup
+    public void setUp() {
+        final File root = new File(System.getProperty("java.io.tmpdir"), "workspace");
+        dir = new FilePath(new File(root, "target"));
+        file = new FilePath(new File(root, "target/classes/com/example/app/Main.class"));
+    }
+
+    @Benchmark
+    public String trimDirectoryPrefix() {
+        return FilePathUtils.trimDirectoryPrefix(dir, file);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.services;
+
+import com.microsoft.jenkins.appservice.commands.AbstractCommandContext;
+import com.microsoft.jenkins.appservice.commands.DeploymentState;
+import com.microsoft.jenkins.appservice.commands.IBaseCommandData;
+import com.microsoft.jenkins.appservice.commands.ICommand;
+import com.microsoft.jenkins.appservice.commands.TransitionInfo;
+import hudson.model.TaskListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of running a chain of commands which do nothing, like the docker build, push and deploy chain.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandServiceBenchmark {
+
+    @Benchmark
+    public boolean executeCommands() {
+        return CommandService.executeCommands(new Context());
+    }
+
+    @Benchmark
+    public boolean executeCommandGraph() throws InterruptedException {
+        return CommandService.executeCommandGraph(new Context());
+    }
+
+    private static final class Build implements ICommand<IBaseCommandData> {
+        @Override
+        public void execute(IBaseCommandData context) {
+            context.setDeploymentState(DeploymentState.Success);
+        }
+    }
+
+    private static final class Push implements ICommand<IBaseCommandData> {
+        @Override
+        public void execute(IBaseCommandData context) {
+            context.setDeploymentState(DeploymentState.Success);
+        }
+    }
+
+    private static final class Deploy implements ICommand<IBaseCommandData> {
+        @Override
+        public void execute(IBaseCommandData context) {
+            context.setDeploymentState(DeploymentState.Success);
+        }
+    }
+
+    private static final class Context extends AbstractCommandContext implements IBaseCommandData {
+        private Context() {
+            final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+            commands.put(Build.class, new TransitionInfo(new Build(), Push.class, null));
+            commands.put(Push.class, new TransitionInfo(new Push(), Deploy.class, null));
+            commands.put(Deploy.class, new TransitionInfo(new Deploy(), null, null));
+            configure(null, null, TaskListener.NULL, commands, Build.class);
+            setDeploymentState(DeploymentState.Running);
+        }
+
+        @Override
+        public IBaseCommandData getDataForCommand(ICommand command) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice;
+
+import com.microsoft.jenkins.appservice.commands.DeploymentTimings;
+import hudson.model.Api;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Time spent in each phase of the web app deployments of a build, shown as a table on the build and exposed
+ * through the remote API, e.g. {@code /job/foo/1/azureWebAppDeployment/api/json}.
+ */
+@ExportedBean
+public class DeploymentTimingAction implements RunAction2 {
+
+    /**
+     * Serializes adding the action to builds, rather than locking on the build which core and other plugins use.
+     */
+    private static final Object LOCK = new Object();
+
+    private final List<Target> targets = new ArrayList<>();
+
+    private transient Run<?, ?> run;
+
+    /**
+     * Get the action of a build, adding it if it doesn't exist yet.
+     *
+     * @param run Build
+     * @return Deployment timing action
+     */
+    public static DeploymentTimingAction get(Run<?, ?> run) {
+        synchronized (LOCK) {
+            DeploymentTimingAction action = run.getAction(DeploymentTimingAction.class);
+            if (action == null) {
+                action = new DeploymentTimingAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Add the timings of a deployment.
+     *
+     * @param name Deployment target, e.g. resource group and app name
+     * @param timings Timings of the deployment
+     */
+    public synchronized void add(String name, DeploymentTimings timings) {
+        targets.add(new Target(name, timings.getPhases()));
+    }
+
+    @Exported
+    public synchronized List<Target> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Azure Web App Deployment Timings";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "azureWebAppDeployment";
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Target {
+        private final String name;
+        private final List<DeploymentTimings.Phase> phases;
+
+        Target(String name, List<DeploymentTimings.Phase> phases) {
+            this.name = name;
+            this.phases = new ArrayList<>(phases);
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public List<DeploymentTimings.Phase> getPhases() {
+            return Collections.unmodifiableList(phases);
+        }
+    }
+}
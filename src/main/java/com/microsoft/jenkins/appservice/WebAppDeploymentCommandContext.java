@@ -22,6 +22,7 @@ import java.util.HashMap;
 public class WebAppDeploymentCommandContext extends AbstractCommandContext
         implements FTPDeployCommand.IFTPDeployCommandData,
         GitDeployCommand.IGitDeployCommandData,
+        ZipDeployCommand.IZipDeployCommandData,
         DockerBuildCommand.IDockerBuildCommandData,
         DockerPushCommand.IDockerPushCommandData,
         DockerRemoveImageCommand.IDockerRemoveImageCommandData,
@@ -37,6 +38,12 @@ public class WebAppDeploymentCommandContext extends AbstractCommandContext
     private String slotName;
     private boolean deleteTempImage;
     private String azureCredentialsId;
+    private int ftpConnections;
+    private boolean incrementalDeploy;
+    private boolean deleteStaleFiles;
+    private boolean stagedDeploy;
+    private boolean zipDeploy;
+    private boolean inMemoryGitCommit;
 
     private PublishingProfile pubProfile;
     private WebApp webApp;
@@ -75,34 +82,55 @@ public class WebAppDeploymentCommandContext extends AbstractCommandContext
         this.azureCredentialsId = azureCredentialsId;
     }
 
-    public void configure(Run<?, ?> run, FilePath workspace, TaskListener listener, WebApp app) throws AzureCloudException {
-        if (StringUtils.isBlank(slotName)) {
-            // Deploy to default
-            pubProfile = app.getPublishingProfile();
-        } else {
-            // Deploy to slot
-            final DeploymentSlot slot = app.deploymentSlots().getByName(slotName);
-            if (slot == null) {
-                throw new AzureCloudException(String.format("Slot %s not found", slotName));
-            }
+    public void setFtpConnections(final int ftpConnections) {
+        this.ftpConnections = ftpConnections;
+    }
 
-            pubProfile = slot.getPublishingProfile();
+    public void setIncrementalDeploy(final boolean incrementalDeploy) {
+        this.incrementalDeploy = incrementalDeploy;
+    }
+
+    public void setDeleteStaleFiles(final boolean deleteStaleFiles) {
+        this.deleteStaleFiles = deleteStaleFiles;
+    }
+
+    public void setStagedDeploy(final boolean stagedDeploy) {
+        this.stagedDeploy = stagedDeploy;
+    }
+
+    public void setZipDeploy(final boolean zipDeploy) {
+        this.zipDeploy = zipDeploy;
+    }
+
+    public void setInMemoryGitCommit(final boolean inMemoryGitCommit) {
+        this.inMemoryGitCommit = inMemoryGitCommit;
+    }
+
+    public void configure(Run<?, ?> run, FilePath workspace, TaskListener listener, WebApp app) throws AzureCloudException {
+        final boolean isDocker = StringUtils.isNotBlank(publishType) && publishType.equalsIgnoreCase(PUBLISH_TYPE_DOCKER);
+        if (!isDocker) {
+            // Docker deployment updates the app configuration and doesn't need the publishing profile
+            pubProfile = getPublishingProfile(app);
         }
 
         HashMap<Class, TransitionInfo> commands = new HashMap<>();
 
         Class startCommandClass;
-        if (StringUtils.isNotBlank(publishType) && publishType.equalsIgnoreCase(PUBLISH_TYPE_DOCKER)) {
+        if (isDocker) {
             startCommandClass = DockerBuildCommand.class;
             this.webApp = app;
             commands.put(DockerBuildCommand.class, new TransitionInfo(new DockerBuildCommand(), DockerPushCommand.class, null));
             commands.put(DockerPushCommand.class, new TransitionInfo(new DockerPushCommand(), DockerDeployCommand.class, null));
+            commands.put(DockerDeployCommand.class, new TransitionInfo(new DockerDeployCommand(), null, null));
             if (deleteTempImage) {
-                commands.put(DockerDeployCommand.class, new TransitionInfo(new DockerDeployCommand(), DockerRemoveImageCommand.class, null));
-                commands.put(DockerRemoveImageCommand.class, new TransitionInfo(new DockerRemoveImageCommand(), null, null));
-            } else {
-                commands.put(DockerDeployCommand.class, new TransitionInfo(new DockerDeployCommand(), null, null));
+                // The local image is no longer needed once pushed, so remove it while the app is being updated
+                commands.put(DockerRemoveImageCommand.class, new TransitionInfo(new DockerRemoveImageCommand(), null, null)
+                        .withDependencies(DockerPushCommand.class));
             }
+        } else if (zipDeploy) {
+            // Deploy all files in a single zip package through Kudu
+            startCommandClass = ZipDeployCommand.class;
+            commands.put(ZipDeployCommand.class, new TransitionInfo(new ZipDeployCommand(), null, null));
         } else if (app.javaVersion() != JavaVersion.OFF) {
             // For Java application, use FTP-based deployment as it's the recommended way
             startCommandClass = FTPDeployCommand.class;
@@ -117,6 +145,20 @@ public class WebAppDeploymentCommandContext extends AbstractCommandContext
         this.setDeploymentState(DeploymentState.Running);
     }
 
+    private PublishingProfile getPublishingProfile(WebApp app) throws AzureCloudException {
+        if (StringUtils.isBlank(slotName)) {
+            // Deploy to default
+            return app.getPublishingProfile();
+        }
+
+        // Deploy to slot
+        final DeploymentSlot slot = app.deploymentSlots().getByName(slotName);
+        if (slot == null) {
+            throw new AzureCloudException(String.format("Slot %s not found", slotName));
+        }
+        return slot.getPublishingProfile();
+    }
+
     @Override
     public IBaseCommandData getDataForCommand(ICommand command) {
         return this;
@@ -156,6 +198,11 @@ public class WebAppDeploymentCommandContext extends AbstractCommandContext
         return new DefaultDockerClientBuilder();
     }
 
+    @Override
+    public FTPTransferProfile getFtpTransferProfile() {
+        return new FTPTransferProfile();
+    }
+
     @Override
     public WebApp getWebApp() {
         return webApp;
@@ -170,4 +217,29 @@ public class WebAppDeploymentCommandContext extends AbstractCommandContext
     public String getAzureCredentialsId() {
         return this.azureCredentialsId;
     }
+
+    @Override
+    public int getFtpConnections() {
+        return this.ftpConnections;
+    }
+
+    @Override
+    public boolean isIncrementalDeploy() {
+        return this.incrementalDeploy;
+    }
+
+    @Override
+    public boolean isDeleteStaleFiles() {
+        return this.deleteStaleFiles;
+    }
+
+    @Override
+    public boolean isStagedDeploy() {
+        return this.stagedDeploy;
+    }
+
+    @Override
+    public boolean isInMemoryGitCommit() {
+        return this.inMemoryGitCommit;
+    }
 }
@@ -10,16 +10,15 @@ import com.cloudbees.plugins.credentials.common.IdCredentials;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.github.dockerjava.api.model.AuthConfig;
-import com.microsoft.azure.PagedList;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.appservice.WebApp;
 import com.microsoft.azure.management.appservice.implementation.SiteConfigResourceInner;
-import com.microsoft.azure.management.appservice.implementation.SiteInner;
-import com.microsoft.azure.management.resources.ResourceGroup;
 import com.microsoft.azure.util.AzureCredentials;
 import hudson.*;
 import hudson.model.*;
 import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
@@ -38,6 +37,7 @@ import org.jenkinsci.plugins.docker.commons.credentials.DockerRegistryEndpoint;
 import org.jenkinsci.plugins.docker.commons.credentials.DockerRegistryToken;
 import com.microsoft.jenkins.appservice.commands.DockerBuildInfo;
 import com.microsoft.jenkins.appservice.commands.DockerPingCommand;
+import com.microsoft.jenkins.appservice.util.AzureResourceCache;
 import com.microsoft.jenkins.appservice.util.TokenCache;
 import com.microsoft.jenkins.exceptions.AzureCloudException;
 import com.microsoft.jenkins.services.CommandService;
@@ -50,10 +50,21 @@ import org.kohsuke.stapler.bind.JavaScriptMethod;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildStep {
 
+    private static final int DEFAULT_TARGET_PARALLELISM = 4;
+
     private final String azureCredentialsId;
     private final String resourceGroup;
     private final String appName;
@@ -65,6 +76,14 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
     private DockerRegistryEndpoint dockerRegistryEndpoint;
     private boolean deployOnlyIfSuccessful;
     private boolean deleteTempImage;
+    private int ftpConnections;
+    private boolean incrementalDeploy;
+    private boolean deleteStaleFiles;
+    private boolean stagedDeploy;
+    private boolean zipDeploy;
+    private boolean inMemoryGitCommit;
+    private List<WebAppDeploymentTarget> additionalTargets;
+    private int targetParallelism;
 
     @CheckForNull
     private
@@ -89,6 +108,9 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
         this.dockerFilePath = "**/Dockerfile";
         this.deployOnlyIfSuccessful = true;
         this.deleteTempImage = true;
+        this.ftpConnections = 1;
+        this.additionalTargets = Collections.emptyList();
+        this.targetParallelism = DEFAULT_TARGET_PARALLELISM;
     }
 
     @DataBoundSetter
@@ -131,6 +153,47 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
         this.deleteTempImage = deleteTempImage;
     }
 
+    @DataBoundSetter
+    public void setFtpConnections(final int ftpConnections) {
+        this.ftpConnections = ftpConnections;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalDeploy(final boolean incrementalDeploy) {
+        this.incrementalDeploy = incrementalDeploy;
+    }
+
+    @DataBoundSetter
+    public void setDeleteStaleFiles(final boolean deleteStaleFiles) {
+        this.deleteStaleFiles = deleteStaleFiles;
+    }
+
+    @DataBoundSetter
+    public void setStagedDeploy(final boolean stagedDeploy) {
+        this.stagedDeploy = stagedDeploy;
+    }
+
+    @DataBoundSetter
+    public void setZipDeploy(final boolean zipDeploy) {
+        this.zipDeploy = zipDeploy;
+    }
+
+    @DataBoundSetter
+    public void setInMemoryGitCommit(final boolean inMemoryGitCommit) {
+        this.inMemoryGitCommit = inMemoryGitCommit;
+    }
+
+    @DataBoundSetter
+    public void setAdditionalTargets(final List<WebAppDeploymentTarget> additionalTargets) {
+        this.additionalTargets = additionalTargets == null
+                ? Collections.<WebAppDeploymentTarget>emptyList() : new ArrayList<>(additionalTargets);
+    }
+
+    @DataBoundSetter
+    public void setTargetParallelism(final int targetParallelism) {
+        this.targetParallelism = targetParallelism;
+    }
+
     public String getDockerImageName() {
         return dockerImageName;
     }
@@ -175,6 +238,40 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
         return deleteTempImage;
     }
 
+    public int getFtpConnections() {
+        return ftpConnections;
+    }
+
+    public boolean isIncrementalDeploy() {
+        return incrementalDeploy;
+    }
+
+    public boolean isDeleteStaleFiles() {
+        return deleteStaleFiles;
+    }
+
+    public boolean isStagedDeploy() {
+        return stagedDeploy;
+    }
+
+    public boolean isZipDeploy() {
+        return zipDeploy;
+    }
+
+    public boolean isInMemoryGitCommit() {
+        return inMemoryGitCommit;
+    }
+
+    public List<WebAppDeploymentTarget> getAdditionalTargets() {
+        return additionalTargets == null
+                ? Collections.<WebAppDeploymentTarget>emptyList() : Collections.unmodifiableList(additionalTargets);
+    }
+
+    public int getTargetParallelism() {
+        // Configurations saved before the option was added
+        return targetParallelism > 0 ? targetParallelism : DEFAULT_TARGET_PARALLELISM;
+    }
+
     @DataBoundSetter
     public void setSourceDirectory(@CheckForNull String sourceDirectory) {
         this.sourceDirectory = Util.fixNull(sourceDirectory);
@@ -231,47 +328,179 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
 
         listener.getLogger().println("Starting Azure Web App Deployment");
 
-        // Get app info
+        final List<WebAppDeploymentTarget> targets = getTargets();
+        if (targets.size() > 1 && WebAppDeploymentCommandContext.PUBLISH_TYPE_DOCKER.equalsIgnoreCase(publishType)) {
+            throw new AbortException("Publish via docker to more than one web app is not currently supported.");
+        }
+
+        // Get app info of all targets, while the build environment is resolved
         final Azure azureClient = TokenCache.getInstance(AzureCredentials.getServicePrincipal(azureCredentialsId)).getAzureClient();
-        final WebApp app = azureClient.webApps().getByResourceGroup(resourceGroup, appName);
-        if (app == null) {
-            throw new AbortException(String.format("Web App %s in resource group %s not found", appName, resourceGroup));
+        final Map<WebAppDeploymentTarget, Future<WebApp>> appFutures = new LinkedHashMap<>();
+        for (final WebAppDeploymentTarget target : targets) {
+            appFutures.put(target, Computer.threadPoolForRemoting.submit(new Callable<WebApp>() {
+                @Override
+                public WebApp call() {
+                    return azureClient.webApps().getByResourceGroup(target.getResourceGroup(), target.getAppName());
+                }
+            }));
         }
 
-        final String expandedFilePath = run.getEnvironment(listener).expand(filePath);
-        final DockerBuildInfo dockerBuildInfo;
+        final Map<WebAppDeploymentTarget, WebAppDeploymentCommandContext> contexts = new LinkedHashMap<>();
         try {
-            dockerBuildInfo = validateDockerBuildInfo(run, listener, app);
-        } catch (AzureCloudException e) {
-            throw new AbortException(e.getMessage());
+            final EnvVars envVars = run.getEnvironment(listener);
+            final String expandedFilePath = envVars.expand(filePath);
+
+            for (final Map.Entry<WebAppDeploymentTarget, Future<WebApp>> entry : appFutures.entrySet()) {
+                final WebAppDeploymentTarget target = entry.getKey();
+                final WebApp app = getWebApp(entry.getValue());
+                if (app == null) {
+                    throw new AbortException(String.format("Web App %s in resource group %s not found",
+                            target.getAppName(), target.getResourceGroup()));
+                }
+
+                final WebAppDeploymentCommandContext commandContext;
+                try {
+                    commandContext = createCommandContext(run, workspace, listener, envVars, expandedFilePath,
+                            target, app);
+                } catch (AzureCloudException e) {
+                    throw new AbortException(e.getMessage());
+                }
+                contexts.put(target, commandContext);
+            }
+        } finally {
+            // Stop the lookups still going on if one of them failed or the build was aborted
+            for (final Future<WebApp> appFuture : appFutures.values()) {
+                appFuture.cancel(true);
+            }
+        }
+
+        if (contexts.size() == 1) {
+            final WebAppDeploymentCommandContext commandContext = contexts.values().iterator().next();
+            if (!CommandService.executeCommandGraph(commandContext)) {
+                markIncomplete(commandContext);
+            }
+        } else {
+            deployTargets(contexts, listener);
+        }
+
+        final DeploymentTimingAction timingAction = DeploymentTimingAction.get(run);
+        final List<WebAppDeploymentTarget> failedTargets = new ArrayList<>();
+        for (final Map.Entry<WebAppDeploymentTarget, WebAppDeploymentCommandContext> entry : contexts.entrySet()) {
+            timingAction.add(entry.getKey().toString(), entry.getValue().getTimings());
+            if (entry.getValue().getHasError()) {
+                failedTargets.add(entry.getKey());
+            }
+            if (contexts.size() > 1) {
+                listener.getLogger().println(String.format("Deployment to %s: %s", entry.getKey(),
+                        entry.getValue().getHasError() ? "FAILED" : "SUCCESS"));
+            }
         }
 
+        if (failedTargets.isEmpty()) {
+            listener.getLogger().println("Done Azure Web App deployment.");
+        } else if (contexts.size() == 1) {
+            throw new AbortException("Azue Web App deployment failed.");
+        } else {
+            throw new AbortException(String.format("Azue Web App deployment failed for %d of %d targets: %s",
+                    failedTargets.size(), contexts.size(), StringUtils.join(failedTargets, ", ")));
+        }
+    }
+
+    /**
+     * Get the web apps to deploy to, the one configured in the step followed by the additional ones.
+     *
+     * @return Deployment targets
+     */
+    public List<WebAppDeploymentTarget> getTargets() {
+        final List<WebAppDeploymentTarget> targets = new ArrayList<>();
+        final WebAppDeploymentTarget target = new WebAppDeploymentTarget(resourceGroup, appName);
+        target.setSlotName(slotName);
+        targets.add(target);
+        targets.addAll(getAdditionalTargets());
+        return targets;
+    }
+
+    private WebAppDeploymentCommandContext createCommandContext(
+            final Run<?, ?> run, final FilePath workspace, final TaskListener listener, final EnvVars envVars,
+            final String expandedFilePath, final WebAppDeploymentTarget target, final WebApp app)
+            throws AzureCloudException {
+        final DockerBuildInfo dockerBuildInfo = validateDockerBuildInfo(run, envVars, app);
+
         final WebAppDeploymentCommandContext commandContext = new WebAppDeploymentCommandContext(expandedFilePath);
         commandContext.setSourceDirectory(sourceDirectory);
         commandContext.setTargetDirectory(targetDirectory);
-        commandContext.setSlotName(slotName);
+        commandContext.setSlotName(target.getSlotName());
         commandContext.setPublishType(publishType);
         commandContext.setDockerBuildInfo(dockerBuildInfo);
         commandContext.setDeleteTempImage(deleteTempImage);
         commandContext.setAzureCredentialsId(azureCredentialsId);
-
+        commandContext.setFtpConnections(ftpConnections);
+        commandContext.setIncrementalDeploy(incrementalDeploy);
+        commandContext.setDeleteStaleFiles(deleteStaleFiles);
+        commandContext.setStagedDeploy(stagedDeploy);
+        commandContext.setZipDeploy(zipDeploy);
+        commandContext.setInMemoryGitCommit(inMemoryGitCommit);
+
+        commandContext.configure(run, workspace, listener, app);
+        return commandContext;
+    }
+
+    /**
+     * Deploy to all targets concurrently, at most {@link #getTargetParallelism()} at a time.
+     */
+    private void deployTargets(final Map<WebAppDeploymentTarget, WebAppDeploymentCommandContext> contexts,
+                               final TaskListener listener) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(getTargetParallelism(), contexts.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "WebAppDeploymentRecorder.deployTargets"));
         try {
-            commandContext.configure(run, workspace, listener, app);
-        } catch (AzureCloudException e) {
-            throw new AbortException(e.getMessage());
-        }
+            final Map<Future<Boolean>, WebAppDeploymentCommandContext> futures = new LinkedHashMap<>();
+            for (final Map.Entry<WebAppDeploymentTarget, WebAppDeploymentCommandContext> entry : contexts.entrySet()) {
+                futures.put(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        listener.getLogger().println("Starting deployment to " + entry.getKey());
+                        return CommandService.executeCommandGraph(entry.getValue());
+                    }
+                }), entry.getValue());
+            }
 
-        CommandService.executeCommands(commandContext);
+            for (final Map.Entry<Future<Boolean>, WebAppDeploymentCommandContext> entry : futures.entrySet()) {
+                try {
+                    if (!entry.getKey().get()) {
+                        markIncomplete(entry.getValue());
+                    }
+                } catch (ExecutionException e) {
+                    entry.getValue().logError("Deployment failed: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
+    /**
+     * Make sure a deployment whose commands didn't all run is reported as failed, even if no command had an error.
+     */
+    private static void markIncomplete(final WebAppDeploymentCommandContext commandContext) {
         if (!commandContext.getHasError()) {
-            listener.getLogger().println("Done Azure Web App deployment.");
-        } else {
-            throw new AbortException("Azue Web App deployment failed.");
+            commandContext.logError("Deployment did not complete.");
+        }
+    }
+
+    private static WebApp getWebApp(final Future<WebApp> appFuture) throws IOException, InterruptedException {
+        try {
+            return appFuture.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
         }
     }
 
-    private DockerBuildInfo validateDockerBuildInfo(final Run<?, ?> run, final TaskListener listener, final WebApp app)
-            throws IOException, InterruptedException, AzureCloudException {
+    private DockerBuildInfo validateDockerBuildInfo(final Run<?, ?> run, final EnvVars envVars, final WebApp app)
+            throws AzureCloudException {
         final DockerBuildInfo dockerBuildInfo = new DockerBuildInfo();
 
         final String linuxFxVersion = getLinuxFxVersion(app);
@@ -283,8 +512,6 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
             return dockerBuildInfo;
         }
 
-        final EnvVars envVars = run.getEnvironment(listener);
-
         // docker file
         final String dockerfile = StringUtils.isBlank(dockerFilePath) ? "**/Dockerfile" : dockerFilePath;
         dockerBuildInfo.withDockerfile(envVars.expand(dockerfile));
@@ -396,9 +623,8 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
             final ListBoxModel model = new ListBoxModel();
             // list all app service
             if (StringUtils.isNotBlank(azureCredentialsId)) {
-                final Azure azureClient = TokenCache.getInstance(AzureCredentials.getServicePrincipal(azureCredentialsId)).getAzureClient();
-                for (final ResourceGroup rg : azureClient.resourceGroups().list()) {
-                    model.add(rg.name());
+                for (final String name : AzureResourceCache.getResourceGroupNames(azureCredentialsId)) {
+                    model.add(name);
                 }
             }
             if (model.size() == 0) {
@@ -408,16 +634,14 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
         }
 
         public ListBoxModel doFillAppNameItems(@QueryParameter final String azureCredentialsId,
-                                                  @QueryParameter final String resourceGroup) {
+                                                  @QueryParameter final String resourceGroup,
+                                                  @QueryParameter final String appNameFilter) {
             final ListBoxModel model = new ListBoxModel();
             // list all app service
-            // https://github.com/Azure/azure-sdk-for-java/issues/1762
             if (StringUtils.isNotBlank(azureCredentialsId) && StringUtils.isNotBlank(resourceGroup)) {
-                final Azure azureClient = TokenCache.getInstance(AzureCredentials.getServicePrincipal(azureCredentialsId)).getAzureClient();
-                final PagedList<SiteInner> list = azureClient.webApps().inner().listByResourceGroup(resourceGroup);
-                list.loadAll();
-                for (final SiteInner webApp : list) {
-                    model.add(webApp.name());
+                for (final String name : AzureResourceCache.getWebAppNames(
+                        azureCredentialsId, resourceGroup, appNameFilter)) {
+                    model.add(name);
                 }
             }
             if (model.size() == 0) {
@@ -426,6 +650,14 @@ public class WebAppDeploymentRecorder extends Recorder implements SimpleBuildSte
             return model;
         }
 
+        public FormValidation doRefreshResources(@QueryParameter final String azureCredentialsId) {
+            if (StringUtils.isBlank(azureCredentialsId)) {
+                return FormValidation.error("Azure credential is not selected");
+            }
+            AzureResourceCache.invalidate(azureCredentialsId);
+            return FormValidation.ok("Resource groups and apps will be loaded again from Azure");
+        }
+
         public FormValidation doVerifyConfiguration(@AncestorInPath final Item owner,
                                                     @QueryParameter final String url,
                                                     @QueryParameter final String credentialsId) {
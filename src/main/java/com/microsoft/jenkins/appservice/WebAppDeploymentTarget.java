@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * A web app, or a deployment slot of it, to deploy to.
+ */
+public class WebAppDeploymentTarget extends AbstractDescribableImpl<WebAppDeploymentTarget> {
+
+    private final String resourceGroup;
+    private final String appName;
+
+    @CheckForNull
+    private String slotName;
+
+    @DataBoundConstructor
+    public WebAppDeploymentTarget(final String resourceGroup, final String appName) {
+        this.resourceGroup = resourceGroup;
+        this.appName = appName;
+    }
+
+    @DataBoundSetter
+    public void setSlotName(@CheckForNull String slotName) {
+        this.slotName = Util.fixNull(slotName);
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    @CheckForNull
+    public String getSlotName() {
+        return slotName;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtils.isBlank(slotName)
+                ? String.format("%s/%s", resourceGroup, appName)
+                : String.format("%s/%s/%s", resourceGroup, appName, slotName);
+    }
+
+    @Extension
+    @Symbol("webAppTarget")
+    public static final class DescriptorImpl extends Descriptor<WebAppDeploymentTarget> {
+
+        @Override
+        public String getDisplayName() {
+            return "Azure Web App";
+        }
+    }
+}
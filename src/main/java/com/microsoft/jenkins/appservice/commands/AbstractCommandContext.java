@@ -20,6 +20,7 @@ public abstract class AbstractCommandContext implements ICommandServiceData {
     private DeploymentState deployState = DeploymentState.Unknown;
     private HashMap<Class, TransitionInfo> commands;
     private Class startCommandClass;
+    private final DeploymentTimings timings = new DeploymentTimings();
 
     protected void configure(Run<?, ?> run, FilePath workspace, TaskListener listener,
                              HashMap<Class, TransitionInfo> commands,
@@ -50,6 +51,14 @@ public abstract class AbstractCommandContext implements ICommandServiceData {
         return this.deployState;
     }
 
+    public void recordTimings(DeploymentTimings commandTimings) {
+        this.timings.addAll(commandTimings);
+    }
+
+    public DeploymentTimings getTimings() {
+        return this.timings;
+    }
+
     public boolean getHasError() {
         return this.deployState.equals(DeploymentState.HasError);
     }
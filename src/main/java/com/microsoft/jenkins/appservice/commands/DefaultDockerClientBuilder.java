@@ -10,20 +10,134 @@ import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.DockerCmdExecFactory;
 import com.github.dockerjava.api.model.AuthConfig;
 import com.github.dockerjava.jaxrs.JerseyDockerCmdExecFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import hudson.remoting.Channel;
 import org.apache.commons.lang.SystemUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Builds docker clients backed by a pooled connection manager.
+ *
+ * Clients are cached per remoting channel in the JVM they are built in, keyed by docker host, registry auth and pool
+ * size, so that commands running on the same agent share them. Callers lease a client with {@link #build(AuthConfig)}
+ * and give it back with {@link #release(DockerClient)}. At most {@code maxClients} clients are kept per channel and a
+ * client is dropped once it hasn't been used for {@code expireSeconds}, but it's only closed when its last user
+ * releases it. All clients of a channel are dropped when the channel closes. These and the pool size
+ * {@code maxConnections} can be set with system properties named
+ * {@code com.microsoft.jenkins.appservice.commands.DefaultDockerClientBuilder.<setting>}.
+ */
 public class DefaultDockerClientBuilder implements DockerClientBuilder, Serializable {
 
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(DefaultDockerClientBuilder.class.getName());
+
     private static final int CONNECT_TIMEOUT = 1000;
-    private static final int MAX_TOTAL_CONNECTIONS = 1;
-    private static final int MAX_PER_ROUTE_CONNECTIONS = 1;
+    private static final int DEFAULT_MAX_CONNECTIONS = 10;
     private static final String DEFAULT_DOCKER_HOST_ON_WINDOWS = "tcp://localhost:2375";
 
+    private static final long MAX_CLIENTS = Long.getLong(
+            DefaultDockerClientBuilder.class.getName() + ".maxClients", 20);
+    private static final long EXPIRE_SECONDS = Long.getLong(
+            DefaultDockerClientBuilder.class.getName() + ".expireSeconds", 600);
+
+    /**
+     * Guards the caches and lease counts below.
+     */
+    private static final Object LOCK = new Object();
+    /**
+     * Cached clients of each channel, where null stands for code not called through a channel.
+     */
+    private static final Map<Channel, Cache<Key, CachedClient>> CACHES = new HashMap<>();
+    private static final Map<DockerClient, CachedClient> LEASED = new IdentityHashMap<>();
+
+    private final int maxConnections;
+
+    public DefaultDockerClientBuilder() {
+        this(Integer.getInteger(DefaultDockerClientBuilder.class.getName() + ".maxConnections",
+                DEFAULT_MAX_CONNECTIONS));
+    }
+
+    public DefaultDockerClientBuilder(int maxConnections) {
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
 
     @Override
     public DockerClient build(AuthConfig authConfig) {
+        final Key key = new Key(createConfig(authConfig), maxConnections);
+        synchronized (LOCK) {
+            final Cache<Key, CachedClient> cache = getCache(Channel.current());
+            CachedClient cached = cache.getIfPresent(key);
+            if (cached == null) {
+                cached = new CachedClient(createClient(key.config, maxConnections));
+                cache.put(key, cached);
+            }
+            cached.users++;
+            LEASED.put(cached.client, cached);
+            return cached.client;
+        }
+    }
+
+    @Override
+    public void release(DockerClient dockerClient) {
+        synchronized (LOCK) {
+            final CachedClient cached = LEASED.get(dockerClient);
+            if (cached == null) {
+                return;
+            }
+            cached.users--;
+            if (cached.users == 0) {
+                LEASED.remove(dockerClient);
+                if (cached.evicted) {
+                    close(dockerClient);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a client which isn't cached, e.g. for a one-off check on the master. The caller is responsible for
+     * closing it.
+     *
+     * @param authConfig Registry auth
+     * @return Docker client
+     */
+    public DockerClient buildUncached(AuthConfig authConfig) {
+        return createClient(createConfig(authConfig), maxConnections);
+    }
+
+    /**
+     * Drop all cached clients. Clients still in use are closed once released.
+     */
+    public static void closeAll() {
+        final List<Cache<Key, CachedClient>> caches;
+        synchronized (LOCK) {
+            caches = new ArrayList<>(CACHES.values());
+            CACHES.clear();
+        }
+        for (final Cache<Key, CachedClient> cache : caches) {
+            cache.invalidateAll();
+        }
+    }
+
+    private static AzureDockerClientConfig createConfig(AuthConfig authConfig) {
         final AzureDockerClientConfig.Builder builder = AzureDockerClientConfig.createDefaultConfigBuilder()
                 .withRegistryUsername(authConfig.getUsername())
                 .withRegistryPassword(authConfig.getPassword())
@@ -35,14 +149,105 @@ public class DefaultDockerClientBuilder implements DockerClientBuilder, Serializ
         if (SystemUtils.IS_OS_WINDOWS) {
             builder.withDockerHost(DEFAULT_DOCKER_HOST_ON_WINDOWS);
         }
+        return builder.build();
+    }
 
+    private static DockerClient createClient(AzureDockerClientConfig config, int maxConnections) {
         final DockerCmdExecFactory dockerCmdExecFactory = new JerseyDockerCmdExecFactory()
                 .withConnectTimeout(CONNECT_TIMEOUT)
-                .withMaxTotalConnections(MAX_TOTAL_CONNECTIONS)
-                .withMaxPerRouteConnections(MAX_PER_ROUTE_CONNECTIONS);
+                .withMaxTotalConnections(maxConnections)
+                .withMaxPerRouteConnections(maxConnections);
 
-        return com.github.dockerjava.core.DockerClientBuilder.getInstance(builder.build())
+        return com.github.dockerjava.core.DockerClientBuilder.getInstance(config)
                 .withDockerCmdExecFactory(dockerCmdExecFactory).build();
     }
 
+    /**
+     * Get the cache of a channel, and drop it once the channel is closed. Must be called with {@link #LOCK} held.
+     */
+    private static Cache<Key, CachedClient> getCache(final Channel channel) {
+        Cache<Key, CachedClient> cache = CACHES.get(channel);
+        if (cache != null) {
+            return cache;
+        }
+
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .removalListener(new RemovalListener<Key, CachedClient>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, CachedClient> notification) {
+                        final CachedClient cached = notification.getValue();
+                        synchronized (LOCK) {
+                            cached.evicted = true;
+                            if (cached.users == 0) {
+                                close(cached.client);
+                            }
+                        }
+                    }
+                })
+                .build();
+        CACHES.put(channel, cache);
+
+        if (channel != null) {
+            channel.addListener(new Channel.Listener() {
+                @Override
+                public void onClosed(Channel closedChannel, IOException cause) {
+                    final Cache<Key, CachedClient> closedCache;
+                    synchronized (LOCK) {
+                        closedCache = CACHES.remove(closedChannel);
+                    }
+                    if (closedCache != null) {
+                        closedCache.invalidateAll();
+                    }
+                }
+            });
+        }
+        return cache;
+    }
+
+    private static void close(DockerClient client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Fail to close docker client", e);
+        }
+    }
+
+    private static final class CachedClient {
+        private final DockerClient client;
+        private int users;
+        private boolean evicted;
+
+        private CachedClient(DockerClient client) {
+            this.client = client;
+        }
+    }
+
+    private static final class Key {
+        private final AzureDockerClientConfig config;
+        private final int maxConnections;
+
+        private Key(final AzureDockerClientConfig config, final int maxConnections) {
+            this.config = config;
+            this.maxConnections = maxConnections;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return maxConnections == key.maxConnections && config.equals(key.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(config, maxConnections);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent and bytes transferred in each phase of a deployment, e.g. FTP login or Git push.
+ *
+ * Phases recorded more than once, e.g. uploading each file, are summed up. It's safe to record from several threads,
+ * and it's serializable so that commands running on an agent can return it to the master.
+ */
+public final class DeploymentTimings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+    /**
+     * Record a phase started at the given time, which ends now.
+     *
+     * @param name Phase name
+     * @param startNanos Start time from {@link System#nanoTime()}
+     */
+    public void record(String name, long startNanos) {
+        record(name, startNanos, 0);
+    }
+
+    /**
+     * Record a phase started at the given time, which ends now.
+     *
+     * @param name Phase name
+     * @param startNanos Start time from {@link System#nanoTime()}
+     * @param bytes Bytes transferred in the phase
+     */
+    public void record(String name, long startNanos, long bytes) {
+        add(new Phase(name, 1, System.nanoTime() - startNanos, bytes));
+    }
+
+    /**
+     * Add all phases of another timing record.
+     *
+     * @param timings Timings to add, ignored if null
+     */
+    public void addAll(DeploymentTimings timings) {
+        if (timings == null || timings == this) {
+            return;
+        }
+        for (final Phase phase : timings.getPhases()) {
+            add(phase);
+        }
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases.values());
+    }
+
+    private synchronized void add(Phase phase) {
+        final Phase existing = phases.get(phase.name);
+        phases.put(phase.name, existing == null ? phase : existing.plus(phase));
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Phase implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int count;
+        private final long durationNanos;
+        private final long bytes;
+
+        public Phase(String name, int count, long durationNanos, long bytes) {
+            this.name = name;
+            this.count = count;
+            this.durationNanos = durationNanos;
+            this.bytes = bytes;
+        }
+
+        private Phase plus(Phase other) {
+            return new Phase(name, count + other.count, durationNanos + other.durationNanos, bytes + other.bytes);
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public int getCount() {
+            return count;
+        }
+
+        @Exported
+        public long getDurationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        }
+
+        @Exported
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Exported
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -7,18 +7,37 @@
 package com.microsoft.jenkins.appservice.commands;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.BuildImageCmd;
+import com.github.dockerjava.api.exception.DockerClientException;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.BuildResponseItem;
+import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.api.model.ResponseItem;
+import com.github.dockerjava.core.NameParser;
 import com.github.dockerjava.core.command.BuildImageResultCallback;
+import com.github.dockerjava.core.dockerfile.Dockerfile;
 import com.google.common.collect.Sets;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.TaskListener;
 import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.io.Charsets;
 import org.apache.commons.lang.StringUtils;
+import com.microsoft.jenkins.appservice.util.FileMatcher;
 import com.microsoft.jenkins.exceptions.AzureCloudException;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class DockerBuildCommand extends DockerCommand implements ICommand<DockerBuildCommand.IDockerBuildCommandData> {
 
@@ -35,12 +54,18 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
                 throw new AzureCloudException("workspace is not available at this time.");
             }
 
+            final DeploymentTimings timings = new DeploymentTimings();
+            long start = System.nanoTime();
             final FilePath dockerfile = findDockerFile(workspace, dockerBuildInfo.getDockerfile());
             context.logStatus("Dockerfile found: " + dockerfile.getRemote());
+            timings.record("Find Dockerfile", start);
 
+            start = System.nanoTime();
             final String imageId = workspace.act(new DockerBuildCommandOnSlave(
                     context.getListener(), context.getDockerClientBuilder(), dockerBuildInfo, dockerfile, image));
             dockerBuildInfo.setImageId(imageId);
+            timings.record("Docker build", start);
+            context.recordTimings(timings);
 
             context.setDeploymentState(DeploymentState.Success);
         } catch (AzureCloudException | InterruptedException | IOException e) {
@@ -51,14 +76,14 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
 
     private FilePath findDockerFile(FilePath workspace, String pattern) throws AzureCloudException {
         try {
-            final FilePath[] files = workspace.list(pattern);
-            if (files.length > 1) {
+            final List<FileMatcher.Match> files = FileMatcher.list(workspace, pattern);
+            if (files.size() > 1) {
                 throw new AzureCloudException("Multiple Dockerfile found in the specified path.");
-            } else if (files.length == 0) {
+            } else if (files.isEmpty()) {
                 throw new AzureCloudException("No Dockerfile found in the specific path.");
             }
 
-            final FilePath dockerfile = files[0];
+            final FilePath dockerfile = workspace.child(files.get(0).getPath());
             if (!dockerfile.exists()) {
                 throw new AzureCloudException("Dockerfile cannot be found:" + pattern);
             }
@@ -69,8 +94,19 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
         }
     }
 
+    /**
+     * Build the docker image on the agent.
+     *
+     * The build context is labelled with its content hash, so that when an image with the same build context already
+     * exists on the agent, it's tagged and reused instead of being built again. The latest image of each repository
+     * is also tagged {@value #CACHE_TAG}, which keeps it on the agent after the image tag of the build is removed.
+     */
     private static final class DockerBuildCommandOnSlave extends MasterToSlaveCallable<String, AzureCloudException> {
 
+        private static final String CONTEXT_HASH_LABEL = "com.microsoft.jenkins.appservice.context-hash";
+        private static final String CACHE_TAG = "azure-webapp-build-cache";
+        private static final int BUFFER_SIZE = 64 * 1024;
+
         private final TaskListener listener;
         private final DockerClientBuilder dockerClientBuilder;
         private final DockerBuildInfo dockerBuildInfo;
@@ -88,8 +124,27 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
 
         @Override
         public String call() throws AzureCloudException {
-            final boolean[] hasError = {false};
             final DockerClient client = dockerClientBuilder.build(dockerBuildInfo.getAuthConfig());
+            try {
+                return build(client);
+            } finally {
+                dockerClientBuilder.release(client);
+            }
+        }
+
+        private String build(DockerClient client) throws AzureCloudException {
+            final boolean[] hasError = {false};
+
+            final String contextHash = getContextHash();
+            if (contextHash != null) {
+                final String imageId = tagExistingImage(client, contextHash);
+                if (imageId != null) {
+                    dockerBuildInfo.setImageId(imageId);
+                    keepImage(client, imageId);
+                    return imageId;
+                }
+            }
+
             final BuildImageResultCallback callback = new BuildImageResultCallback() {
                 @Override
                 public void onNext(final BuildResponseItem buildResponseItem) {
@@ -118,10 +173,12 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
             };
 
             try {
-                client.buildImageCmd(new File(dockerfile.getRemote()))
-                        .withTags(Sets.newHashSet(image))
-                        .exec(callback)
-                        .awaitCompletion();
+                final BuildImageCmd buildImageCmd = client.buildImageCmd(new File(dockerfile.getRemote()))
+                        .withTags(Sets.newHashSet(image));
+                if (contextHash != null) {
+                    buildImageCmd.withLabels(Collections.singletonMap(CONTEXT_HASH_LABEL, contextHash));
+                }
+                buildImageCmd.exec(callback).awaitCompletion();
             } catch (InterruptedException e) {
                 throw new AzureCloudException(e);
             }
@@ -130,8 +187,124 @@ public class DockerBuildCommand extends DockerCommand implements ICommand<Docker
                 throw new AzureCloudException("Fail to build docker image");
             }
 
+            if (contextHash != null && dockerBuildInfo.getImageId() != null) {
+                keepImage(client, dockerBuildInfo.getImageId());
+            }
             return dockerBuildInfo.getImageId();
         }
+
+        /**
+         * Compute the content hash of the build context, i.e. the files sent to docker daemon excluding those
+         * matched by .dockerignore.
+         *
+         * @return Content hash, or null if it cannot be computed
+         */
+        private String getContextHash() {
+            final File dockerfileFile = new File(dockerfile.getRemote());
+            final File baseDirectory = dockerfileFile.getParentFile();
+            try {
+                final Dockerfile.ScannedResult scannedResult = new Dockerfile(dockerfileFile, baseDirectory).parse();
+                final SortedMap<String, File> files = new TreeMap<>();
+                for (final File file : scannedResult.filesToAdd) {
+                    files.put(baseDirectory.toURI().relativize(file.toURI()).getPath(), file);
+                }
+
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                for (final Map.Entry<String, File> file : files.entrySet()) {
+                    digest.update(String.format("%s\0%d\0", file.getKey(), file.getValue().length())
+                            .getBytes(Charsets.UTF_8));
+                    try (InputStream stream = new FileInputStream(file.getValue())) {
+                        int read;
+                        while ((read = stream.read(buffer)) != -1) {
+                            digest.update(buffer, 0, read);
+                        }
+                    }
+                }
+                return Util.toHexString(digest.digest());
+            } catch (IOException | NoSuchAlgorithmException | DockerClientException e) {
+                listener.getLogger().println("Fail to compute the hash of docker build context: " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Tag the image built from the same build context, if there is one on the agent.
+         *
+         * @param client Docker client
+         * @param contextHash Content hash of the build context
+         * @return Image id, or null if there is no such image
+         */
+        private String tagExistingImage(DockerClient client, String contextHash) {
+            try {
+                final List<Image> images = client.listImagesCmd()
+                        .withLabelFilter(Collections.singletonMap(CONTEXT_HASH_LABEL, contextHash))
+                        .exec();
+                if (images == null || images.isEmpty()) {
+                    return null;
+                }
+
+                // Several images may share the label, e.g. rebuilt after the cache was pruned, so take the newest
+                Image newest = images.get(0);
+                for (final Image candidate : images) {
+                    if (getCreated(candidate) > getCreated(newest)) {
+                        newest = candidate;
+                    }
+                }
+
+                final String imageId = newest.getId();
+                final NameParser.ReposTag reposTag = NameParser.parseRepositoryTag(image);
+                client.tagImageCmd(imageId, reposTag.repos, reposTag.tag).exec();
+                listener.getLogger().println(String.format(
+                        "Build context is unchanged, tagged existing image %s as %s", imageId, image));
+                return imageId;
+            } catch (DockerException e) {
+                listener.getLogger().println("Fail to look up existing docker image: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private static long getCreated(Image image) {
+            return image.getCreated() == null ? 0 : image.getCreated();
+        }
+
+        /**
+         * Tag the image as the build cache of its repository, and remove the image previously tagged so, unless it's
+         * still referenced by other tags or containers.
+         *
+         * @param client Docker client
+         * @param imageId Image id
+         */
+        private void keepImage(DockerClient client, String imageId) {
+            final String repository = NameParser.parseRepositoryTag(image).repos;
+            final String cacheImage = repository + ":" + CACHE_TAG;
+            String previousId = null;
+            try {
+                previousId = client.inspectImageCmd(cacheImage).exec().getId();
+            } catch (NotFoundException e) {
+                // No image cached yet
+            } catch (DockerException e) {
+                listener.getLogger().println("Fail to look up cached docker image: " + e.getMessage());
+            }
+            if (imageId.equals(previousId)) {
+                return;
+            }
+
+            try {
+                client.tagImageCmd(imageId, repository, CACHE_TAG).withForce().exec();
+            } catch (DockerException e) {
+                listener.getLogger().println("Fail to tag docker image for reuse: " + e.getMessage());
+                return;
+            }
+
+            if (previousId != null) {
+                try {
+                    client.removeImageCmd(previousId).exec();
+                } catch (DockerException e) {
+                    // Still in use
+                }
+            }
+        }
     }
 
     public interface IDockerBuildCommandData extends IBaseCommandData {
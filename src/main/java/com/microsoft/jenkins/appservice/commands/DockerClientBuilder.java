@@ -13,4 +13,11 @@ public interface DockerClientBuilder {
 
     DockerClient build(AuthConfig authConfig);
 
+    /**
+     * Release a client got from {@link #build(AuthConfig)} once it's no longer used by the caller.
+     *
+     * @param dockerClient Docker client
+     */
+    void release(DockerClient dockerClient);
+
 }
@@ -44,6 +44,8 @@ public class DockerDeployCommand extends DockerCommand implements ICommand<Docke
                 context.logStatus(String.format("Targeting deployment slot `%s`.", context.getSlotName()));
             }
 
+            final DeploymentTimings timings = new DeploymentTimings();
+            long start = System.nanoTime();
             if (StringUtils.isBlank(context.getSlotName())) {
                 final WebApp.Update update = webApp.update();
                 if (AuthConfig.DEFAULT_SERVER_ADDRESS.equalsIgnoreCase(authConfig.getRegistryAddress())) {
@@ -56,8 +58,12 @@ public class DockerDeployCommand extends DockerCommand implements ICommand<Docke
                 update.withTags(new HashedMap());
                 webApp.inner().withKind("app");
                 update.apply();
+                timings.record("ARM update", start);
+
+                start = System.nanoTime();
                 webApp.stop();
                 webApp.start();
+                timings.record("App restart", start);
             } else {
                 final DeploymentSlot slot = webApp.deploymentSlots().getByName(slotName);
                 checkNotNull(slot, "Deployment slot not found:" + slotName);
@@ -77,7 +83,9 @@ public class DockerDeployCommand extends DockerCommand implements ICommand<Docke
                 siteConfigResourceInner.withLinuxFxVersion(String.format("DOCKER|%s", image));
                 siteConfigResourceInner.withAppSettings(appSettings);
                 azure.webApps().inner().updateConfigurationSlot(webApp.resourceGroupName(), webApp.name(), slot.name(), siteConfigResourceInner);
+                timings.record("ARM update", start);
             }
+            context.recordTimings(timings);
             context.setDeploymentState(DeploymentState.Success);
             context.logStatus("Azure app service updated successfully.");
         } catch (Exception e) {
@@ -11,10 +11,24 @@ import com.github.dockerjava.api.exception.UnauthorizedException;
 import com.github.dockerjava.api.model.AuthConfig;
 import hudson.util.FormValidation;
 
+import java.io.IOException;
+
 public class DockerPingCommand {
     public FormValidation ping(final AuthConfig authConfig) {
-        DockerClient dockerClient = new DefaultDockerClientBuilder().build(authConfig);
+        // Not cached, as the client is only used once on the master
+        final DockerClient dockerClient = new DefaultDockerClientBuilder().buildUncached(authConfig);
+        try {
+            return ping(dockerClient, authConfig);
+        } finally {
+            try {
+                dockerClient.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
 
+    private FormValidation ping(final DockerClient dockerClient, final AuthConfig authConfig) {
         try {
             // make sure local docker is running
             dockerClient.pingCmd().exec();
@@ -7,6 +7,8 @@
 package com.microsoft.jenkins.appservice.commands;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.DockerException;
+import com.github.dockerjava.api.model.AuthConfig;
 import com.github.dockerjava.api.model.PushResponseItem;
 import com.github.dockerjava.core.command.PushImageResultCallback;
 import hudson.FilePath;
@@ -16,6 +18,7 @@ import org.apache.commons.lang.StringUtils;
 import com.microsoft.jenkins.exceptions.AzureCloudException;
 
 import java.io.IOException;
+import java.util.List;
 
 public class DockerPushCommand extends DockerCommand implements ICommand<DockerPushCommand.IDockerPushCommandData> {
 
@@ -31,7 +34,9 @@ public class DockerPushCommand extends DockerCommand implements ICommand<DockerP
             final FilePath workspace = context.getWorkspace();
 
             final DeploymentState state = workspace.act(new DockerPushCommandOnSlave(
-                    context.getListener(), context.getDockerClientBuilder(), dockerBuildInfo, image));
+                    context.getListener(), context.getDockerClientBuilder(), dockerBuildInfo, image,
+                    getFullImageName(dockerBuildInfo),
+                    DockerRegistryClient.getRegistryUrl(dockerBuildInfo.getAuthConfig().getRegistryAddress())));
 
             context.logStatus("Push completed");
             context.setDeploymentState(state);
@@ -47,19 +52,36 @@ public class DockerPushCommand extends DockerCommand implements ICommand<DockerP
         private final TaskListener listener;
         private final DockerBuildInfo dockerBuildInfo;
         private final String image;
+        private final String imageName;
+        private final String registryUrl;
 
         private DockerPushCommandOnSlave(TaskListener listener, DockerClientBuilder dockerClientBuilder,
-                                         DockerBuildInfo dockerBuildInfo, String image) {
+                                         DockerBuildInfo dockerBuildInfo, String image, String imageName,
+                                         String registryUrl) {
             this.listener = listener;
             this.dockerClientBuilder = dockerClientBuilder;
             this.dockerBuildInfo = dockerBuildInfo;
             this.image = image;
+            this.imageName = imageName;
+            this.registryUrl = registryUrl;
         }
 
         @Override
         public DeploymentState call() throws AzureCloudException {
-            final DeploymentState[] state = {DeploymentState.Success};
             final DockerClient dockerClient = dockerClientBuilder.build(dockerBuildInfo.getAuthConfig());
+            try {
+                return push(dockerClient);
+            } finally {
+                dockerClientBuilder.release(dockerClient);
+            }
+        }
+
+        private DeploymentState push(DockerClient dockerClient) {
+            final DeploymentState[] state = {DeploymentState.Success};
+            if (tagExistingImage(dockerClient)) {
+                return state[0];
+            }
+
             final PushImageResultCallback callback = new PushImageResultCallback() {
                 @Override
                 public void onNext(final PushResponseItem item) {
@@ -83,6 +105,49 @@ public class DockerPushCommand extends DockerCommand implements ICommand<DockerP
             return state[0];
         }
 
+        /**
+         * If the image was pushed to the registry before, e.g. by a previous build producing an identical image,
+         * tag its manifest in the registry instead of pushing the image again.
+         *
+         * @param dockerClient Docker client
+         * @return If the image is already in the registry with the tag
+         */
+        private boolean tagExistingImage(DockerClient dockerClient) {
+            try {
+                final List<String> repoDigests = dockerClient.inspectImageCmd(image).exec().getRepoDigests();
+                if (repoDigests == null) {
+                    return false;
+                }
+
+                final AuthConfig authConfig = dockerBuildInfo.getAuthConfig();
+                final DockerRegistryClient registry = new DockerRegistryClient(
+                        registryUrl, authConfig.getUsername(), authConfig.getPassword());
+                final String repository = DockerRegistryClient.getRepository(registryUrl, imageName);
+                final String tag = dockerBuildInfo.getDockerImageTag();
+                for (final String repoDigest : repoDigests) {
+                    if (!repoDigest.startsWith(imageName + "@")) {
+                        continue;
+                    }
+
+                    final String digest = repoDigest.substring(imageName.length() + 1);
+                    final DockerRegistryClient.Manifest manifest = registry.getManifest(repository, digest);
+                    if (manifest == null) {
+                        continue;
+                    }
+                    if (!digest.equals(registry.getManifestDigest(repository, tag))) {
+                        registry.putManifest(repository, tag, manifest);
+                    }
+                    listener.getLogger().println(String.format(
+                            "Image %s is already in the registry as %s, skip pushing (%d bytes saved)",
+                            image, digest, manifest.getImageSize()));
+                    return true;
+                }
+            } catch (IOException | DockerException e) {
+                listener.getLogger().println("Fail to look up the image in the registry: " + e.getMessage());
+            }
+            return false;
+        }
+
         private String outputResponseItem(final PushResponseItem item) {
             final StringBuilder stringBuilder = new StringBuilder();
             if (StringUtils.isNotBlank(item.getId())) {
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.appservice.commands;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal client of the Docker Registry HTTP API V2, to look up manifests already in a registry and tag them
+ * without pushing the image again.
+ *
+ * Requests are sent anonymously, and credentials are only sent in response to a {@code WWW-Authenticate} challenge,
+ * either as basic authentication or through the token authentication flow (e.g. Docker Hub). Credentials are never
+ * sent over plain HTTP.
+ */
+final class DockerRegistryClient {
+
+    static final String MANIFEST_V2 = "application/vnd.docker.distribution.manifest.v2+json";
+    static final String MANIFEST_LIST_V2 = "application/vnd.docker.distribution.manifest.list.v2+json";
+    static final String CONTENT_DIGEST_HEADER = "Docker-Content-Digest";
+
+    private static final String DOCKER_HUB_INDEX = "index.docker.io";
+    private static final String DOCKER_HUB_REGISTRY = "registry-1.docker.io";
+    private static final Pattern CHALLENGE_PARAM = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    private static final String BASIC = "Basic ";
+    private static final String BEARER = "Bearer ";
+
+    private final String registryUrl;
+    private final String username;
+    private final String password;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private String authorization;
+
+    DockerRegistryClient(String registryUrl, String username, String password) {
+        this.registryUrl = registryUrl;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Get the base URL of registry API from the registry address, e.g. https://myacr.azurecr.io.
+     *
+     * @param registryAddress Registry address
+     * @return Registry base URL
+     */
+    static String getRegistryUrl(String registryAddress) {
+        String url = registryAddress;
+        String scheme = "https://";
+        if (url.matches("^\\w+://.*")) {
+            scheme = url.substring(0, url.indexOf("://") + "://".length());
+            url = url.substring(scheme.length());
+        }
+
+        if (url.indexOf("/") > 0) {
+            url = url.substring(0, url.indexOf("/"));
+        }
+        if (url.contains(DOCKER_HUB_INDEX)) {
+            url = DOCKER_HUB_REGISTRY;
+        }
+        return scheme + url;
+    }
+
+    /**
+     * Get the repository name in registry of a full image name without tag.
+     *
+     * @param registryUrl Registry base URL
+     * @param imageName Full image name without tag
+     * @return Repository name
+     */
+    static String getRepository(String registryUrl, String imageName) {
+        final String host = registryUrl.substring(registryUrl.indexOf("://") + "://".length());
+        if (imageName.startsWith(host + "/")) {
+            return imageName.substring(host.length() + 1);
+        }
+        if (host.equals(DOCKER_HUB_REGISTRY) && !imageName.contains("/")) {
+            // Official images on Docker Hub
+            return "library/" + imageName;
+        }
+        return imageName;
+    }
+
+    /**
+     * Get the digest of a manifest with a HEAD request.
+     *
+     * @param repository Repository name
+     * @param reference Tag or digest
+     * @return Manifest digest, or null if it doesn't exist
+     * @throws IOException
+     */
+    String getManifestDigest(String repository, String reference) throws IOException {
+        final HttpURLConnection connection = send("HEAD", manifestPath(repository, reference), null, null);
+        final int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        } else if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Fail to check manifest %s:%s with HTTP %d",
+                    repository, reference, responseCode));
+        }
+        return connection.getHeaderField(CONTENT_DIGEST_HEADER);
+    }
+
+    /**
+     * Get a manifest.
+     *
+     * @param repository Repository name
+     * @param reference Tag or digest
+     * @return Manifest, or null if it doesn't exist
+     * @throws IOException
+     */
+    Manifest getManifest(String repository, String reference) throws IOException {
+        final HttpURLConnection connection = send("GET", manifestPath(repository, reference), null, null);
+        final int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        } else if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Fail to get manifest %s:%s with HTTP %d: %s",
+                    repository, reference, responseCode, readError(connection)));
+        }
+
+        try (InputStream stream = connection.getInputStream()) {
+            return new Manifest(connection.getContentType(), IOUtils.toByteArray(stream));
+        }
+    }
+
+    /**
+     * Upload a manifest, i.e. tag the image it describes.
+     *
+     * @param repository Repository name
+     * @param reference Tag
+     * @param manifest Manifest
+     * @throws IOException
+     */
+    void putManifest(String repository, String reference, Manifest manifest) throws IOException {
+        final HttpURLConnection connection = send("PUT", manifestPath(repository, reference),
+                manifest.getMediaType(), manifest.getContent());
+        final int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_CREATED && responseCode != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Fail to put manifest %s:%s with HTTP %d: %s",
+                    repository, reference, responseCode, readError(connection)));
+        }
+    }
+
+    private String manifestPath(String repository, String reference) {
+        return String.format("/v2/%s/manifests/%s", repository, reference);
+    }
+
+    private HttpURLConnection send(String method, String path, String contentType, byte[] body) throws IOException {
+        HttpURLConnection connection = open(method, path, contentType, body);
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+            final String challenge = connection.getHeaderField("WWW-Authenticate");
+            if (challenge == null || StringUtils.isBlank(username)) {
+                return connection;
+            }
+            if (startsWithIgnoreCase(challenge, BEARER)) {
+                authorization = BEARER + fetchToken(challenge);
+            } else if (startsWithIgnoreCase(challenge, BASIC)) {
+                checkSecure(registryUrl);
+                authorization = basicAuthorization();
+            } else {
+                return connection;
+            }
+            connection = open(method, path, contentType, body);
+        }
+        return connection;
+    }
+
+    private HttpURLConnection open(String method, String path, String contentType, byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(registryUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", MANIFEST_V2 + "," + MANIFEST_LIST_V2);
+        if (authorization != null) {
+            checkSecure(registryUrl);
+            connection.setRequestProperty("Authorization", authorization);
+        }
+
+        if (body != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setDoOutput(true);
+            try (OutputStream stream = connection.getOutputStream()) {
+                stream.write(body);
+            }
+        }
+        return connection;
+    }
+
+    private String fetchToken(String challenge) throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        final Matcher matcher = CHALLENGE_PARAM.matcher(challenge);
+        while (matcher.find()) {
+            params.put(matcher.group(1), matcher.group(2));
+        }
+        if (!params.containsKey("realm")) {
+            throw new IOException("Unrecognized authentication challenge: " + challenge);
+        }
+
+        // The token is a credential of the registry too, so it must neither be fetched nor used over plain HTTP
+        checkSecure(params.get("realm"));
+        checkSecure(registryUrl);
+
+        final StringBuilder url = new StringBuilder(params.get("realm")).append("?");
+        if (params.containsKey("service")) {
+            url.append("service=").append(URLEncoder.encode(params.get("service"), "UTF-8")).append("&");
+        }
+        if (params.containsKey("scope")) {
+            url.append("scope=").append(URLEncoder.encode(params.get("scope"), "UTF-8"));
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+        connection.setRequestProperty("Authorization", basicAuthorization());
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException(String.format("Fail to get registry token with HTTP %d: %s",
+                    connection.getResponseCode(), readError(connection)));
+        }
+
+        final JsonNode response;
+        try (InputStream stream = connection.getInputStream()) {
+            response = mapper.readTree(stream);
+        }
+        final String token = response.path("token").asText(response.path("access_token").asText());
+        if (StringUtils.isBlank(token)) {
+            throw new IOException("No token returned by " + params.get("realm"));
+        }
+        return token;
+    }
+
+    private static void checkSecure(String url) throws IOException {
+        if (!startsWithIgnoreCase(url, "https://")) {
+            throw new IOException("Refuse to send registry credentials over insecure connection to " + url);
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        return value.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private String basicAuthorization() {
+        final String auth = username + ":" + StringUtils.defaultString(password);
+        return BASIC + Base64.encodeBase64String(auth.getBytes(Charsets.UTF_8));
+    }
+
+    private String readError(HttpURLConnection connection) throws IOException {
+        try (InputStream stream = connection.getErrorStream()) {
+            return stream == null ? "" : IOUtils.toString(stream, Charsets.UTF_8);
+        }
+    }
+
+    static final class Manifest {
+        private final String mediaType;
+        private final byte[] content;
+
+        Manifest(String mediaType, byte[] content) {
+            this.mediaType = StringUtils.defaultIfBlank(mediaType, MANIFEST_V2);
+            this.content = content;
+        }
+
+        String getMediaType() {
+            return mediaType;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        /**
+         * Get the total size of the image config and layers referenced by the manifest.
+         *
+         * @return Size in bytes, or 0 if the manifest doesn't record it
+         * @throws IOException
+         */
+        long getImageSize() throws IOException {
+            final JsonNode manifest = new ObjectMapper().readTree(content);
+            long size = manifest.path("config").path("size").asLong();
+            for (final JsonNode layer : manifest.path("layers")) {
+                size += layer.path("size").asLong();
+            }
+            return size;
+        }
+    }
+}
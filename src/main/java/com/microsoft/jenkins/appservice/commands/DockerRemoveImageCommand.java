@@ -21,11 +21,12 @@ public class DockerRemoveImageCommand extends DockerCommand implements ICommand<
     public void execute(IDockerRemoveImageCommandData context) {
         final DockerBuildInfo dockerBuildInfo = context.getDockerBuildInfo();
 
-        final String imageId = dockerBuildInfo.getImageId();
-        context.logStatus(String.format("Removing docker image `%s` from current build agent.", imageId));
-
         try {
-            context.getWorkspace().act(new DockerRemoveCommandOnSlave(context.getDockerClientBuilder(), dockerBuildInfo, imageId));
+            // Only untag the image, so that an image kept for reuse by the build stays on the agent
+            final String image = imageAndTag(dockerBuildInfo);
+            context.logStatus(String.format("Removing docker image `%s` from current build agent.", image));
+
+            context.getWorkspace().act(new DockerRemoveCommandOnSlave(context.getDockerClientBuilder(), dockerBuildInfo, image));
             context.logStatus("Remove completed.");
             context.setDeploymentState(DeploymentState.Success);
         } catch (IOException | InterruptedException | AzureCloudException e) {
@@ -37,20 +38,22 @@ public class DockerRemoveImageCommand extends DockerCommand implements ICommand<
     private static final class DockerRemoveCommandOnSlave extends MasterToSlaveCallable<Void, AzureCloudException> {
         private final DockerClientBuilder dockerClientBuilder;
         private final DockerBuildInfo dockerBuildInfo;
-        private final String imageId;
+        private final String image;
 
-        private DockerRemoveCommandOnSlave(DockerClientBuilder dockerClientBuilder, DockerBuildInfo dockerBuildInfo, String imageId) {
+        private DockerRemoveCommandOnSlave(DockerClientBuilder dockerClientBuilder, DockerBuildInfo dockerBuildInfo, String image) {
             this.dockerClientBuilder = dockerClientBuilder;
             this.dockerBuildInfo = dockerBuildInfo;
-            this.imageId = imageId;
+            this.image = image;
         }
 
         @Override
         public Void call() throws AzureCloudException {
             final DockerClient dockerClient = dockerClientBuilder.build(dockerBuildInfo.getAuthConfig());
-            dockerClient.removeImageCmd(imageId)
-                    .withForce(true)
-                    .exec();
+            try {
+                dockerClient.removeImageCmd(image).exec();
+            } finally {
+                dockerClientBuilder.release(dockerClient);
+            }
             return null;
         }
     }
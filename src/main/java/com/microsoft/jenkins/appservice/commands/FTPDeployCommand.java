@@ -9,15 +9,42 @@ import com.microsoft.azure.management.appservice.PublishingProfile;
 import hudson.FilePath;
 import hudson.Util;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.security.MasterToSlaveCallable;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
+import com.microsoft.jenkins.appservice.util.FileMatcher;
 import com.microsoft.jenkins.appservice.util.FilePathUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCommandData> {
 
@@ -27,6 +54,27 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
     private static final String TOMCAT_ROOT_WAR = SITE_ROOT + "webapps/ROOT.war";
     private static final String TOMCAT_ROOT_DIR = SITE_ROOT + "webapps/ROOT";
 
+    // Old trees and staging directories are kept outside the site root, so that they are neither served nor deployed
+    private static final String SITE_ROOT_PARENT = "/site/";
+    private static final String TRASH_PREFIX = ".removing-";
+    private static final String STAGING_PREFIX = ".staging-";
+
+    private static final int REMOVE_PROGRESS_INTERVAL = 500;
+
+    // Extra connections wait this long at a time for the connection budget, while there's still work for them
+    private static final long CONNECTION_WAIT_MILLIS = 500;
+
+    // Interrupted uploads are resumed on a new connection, waiting longer before each attempt
+    private static final String MAX_ATTEMPTS_PROPERTY = FTPDeployCommand.class.getName() + ".maxAttempts";
+    private static final String RETRY_DELAY_PROPERTY = FTPDeployCommand.class.getName() + ".retryDelay";
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final int DEFAULT_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 30000;
+
+    private interface FTPTask<T> {
+        void run(FTPClient ftpClient, T item) throws IOException, FTPException, InterruptedException;
+    }
+
     private static final class FTPException extends Exception {
 
         FTPException(String msg) {
@@ -49,6 +97,13 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
             return;
         }
 
+        if (context.isStagedDeploy() && StringUtils.strip(Util.fixNull(context.getTargetDirectory()), "/").isEmpty()) {
+            // Swapping the site root itself would leave the site without content in between the two renames
+            context.logError("Staged deployment requires a target directory below the site root");
+            context.setDeploymentState(DeploymentState.HasError);
+            return;
+        }
+
         String ftpUrl = pubProfile.ftpUrl();
         if (ftpUrl.startsWith("ftp://")) {
             ftpUrl = ftpUrl.substring("ftp://".length());
@@ -60,7 +115,7 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
         }
 
         try {
-            workspace.act(new FTPDeployCommandOnSlave(
+            final DeploymentTimings timings = workspace.act(new FTPDeployCommandOnSlave(
                 context.getListener(),
                 ftpUrl,
                 pubProfile.ftpUsername(),
@@ -68,8 +123,16 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
                 workspace,
                 context.getSourceDirectory(),
                 context.getTargetDirectory(),
-                context.getFilePath()
+                context.getFilePath(),
+                context.getFtpConnections(),
+                context.isIncrementalDeploy(),
+                context.isDeleteStaleFiles(),
+                context.isStagedDeploy(),
+                Math.max(1, Integer.getInteger(MAX_ATTEMPTS_PROPERTY, DEFAULT_MAX_ATTEMPTS)),
+                Math.max(0, Integer.getInteger(RETRY_DELAY_PROPERTY, DEFAULT_RETRY_DELAY)),
+                context.getFtpTransferProfile()
             ));
+            context.recordTimings(timings);
         } catch (IOException | FTPException e) {
             context.logError("Fail to deploy to FTP: " + e.getMessage());
         } catch (InterruptedException e) {
@@ -77,7 +140,7 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
         }
     }
 
-    private static final class FTPDeployCommandOnSlave extends MasterToSlaveCallable<Void, FTPException> {
+    private static final class FTPDeployCommandOnSlave extends MasterToSlaveCallable<DeploymentTimings, FTPException> {
 
         private final TaskListener listener;
         private final String ftpUrl;
@@ -87,6 +150,18 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
         private final String sourceDirectory;
         private final String targetDirectory;
         private final String filePath;
+        private final int connections;
+        private final boolean incremental;
+        private final boolean deleteStaleFiles;
+        private final boolean staged;
+        private final int maxAttempts;
+        private final long retryDelay;
+        private final FTPTransferProfile transferProfile;
+        private final DeploymentTimings timings = new DeploymentTimings();
+        /**
+         * Connections left of the {@code connections} budget, shared by the upload and background removals.
+         */
+        private transient Semaphore connectionBudget;
 
         private FTPDeployCommandOnSlave(
                 TaskListener listener,
@@ -96,7 +171,14 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
                 FilePath workspace,
                 String sourceDirectory,
                 String targetDirectory,
-                String filePath) {
+                String filePath,
+                int connections,
+                boolean incremental,
+                boolean deleteStaleFiles,
+                boolean staged,
+                int maxAttempts,
+                long retryDelay,
+                FTPTransferProfile transferProfile) {
             this.listener = listener;
             this.ftpUrl = ftpUrl;
             this.ftpUserName = ftpUserName;
@@ -105,125 +187,731 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
             this.sourceDirectory = sourceDirectory;
             this.targetDirectory = targetDirectory;
             this.filePath = filePath;
+            this.connections = connections;
+            this.incremental = incremental;
+            this.deleteStaleFiles = deleteStaleFiles;
+            this.staged = staged;
+            this.maxAttempts = maxAttempts;
+            this.retryDelay = retryDelay;
+            this.transferProfile = transferProfile;
         }
 
 
         @Override
-        public Void call() throws FTPException {
+        public DeploymentTimings call() throws FTPException {
             FTPClient ftpClient = new FTPClient();
+            Future<?> backgroundRemoval = null;
+            String stagingDirectory = null;
+            connectionBudget = new Semaphore(Math.max(1, connections));
+            // Held by the main connection until it's closed
+            connectionBudget.acquireUninterruptibly();
             try {
                 listener.getLogger().println(String.format("Starting to deploy to FTP: %s", ftpUrl));
+                listener.getLogger().println(String.format("FTP transfer profile: %s", transferProfile));
 
-                ftpClient.connect(ftpUrl);
-                if (!ftpClient.login(ftpUserName, ftpPassword)) {
-                    throw new FTPException("Fail to login");
-                }
-
-                // Use passive mode to bypass client firewall
-                ftpClient.enterLocalPassiveMode();
+                connect(ftpClient);
 
+                long start = System.nanoTime();
                 final String absTargetDirectory = SITE_ROOT + Util.fixNull(targetDirectory);
                 if (!ftpClient.changeWorkingDirectory(absTargetDirectory)) {
-                    // Target directory doesn't exist. Try to create it.
-                    if (!ftpClient.makeDirectory(absTargetDirectory)) {
-                        throw new FTPException("Fail to make directory: " + absTargetDirectory);
+                    // Target directory doesn't exist. Create it together with any missing parents.
+                    final SortedSet<String> targetDirectories = new TreeSet<>();
+                    addDirectory(targetDirectories, StringUtils.strip(Util.fixNull(targetDirectory), "/"));
+                    createDirectories(ftpClient, SITE_ROOT, targetDirectories);
+                    if (!ftpClient.changeWorkingDirectory(absTargetDirectory)) {
+                        throw new FTPException("Fail to change working directory to: " + absTargetDirectory);
                     }
                 }
 
-                if (!ftpClient.changeWorkingDirectory(absTargetDirectory)) {
-                    throw new FTPException("Fail to change working directory to: " + absTargetDirectory);
+                // A staged deployment uploads into a fresh directory outside the site and swaps it in at the end
+                final long stamp = System.currentTimeMillis();
+                final String uploadDirectory = staged ? SITE_ROOT_PARENT + STAGING_PREFIX + stamp : absTargetDirectory;
+                if (staged) {
+                    if (!ftpClient.makeDirectory(uploadDirectory)) {
+                        throw new FTPException("Fail to make staging directory: " + uploadDirectory);
+                    }
+                    stagingDirectory = uploadDirectory;
+                    if (!ftpClient.changeWorkingDirectory(uploadDirectory)) {
+                        throw new FTPException("Fail to change working directory to: " + uploadDirectory);
+                    }
                 }
 
-                listener.getLogger().println(String.format("Working directory: %s", ftpClient.printWorkingDirectory()));
+                listener.getLogger().println(String.format("Working directory: %s", uploadDirectory));
+                timings.record("FTP prepare directory", start);
 
+                start = System.nanoTime();
                 final FilePath sourceDir = workspace.child(Util.fixNull(sourceDirectory));
-                final FilePath[] files = sourceDir.list(filePath);
-                for (final FilePath file : files) {
-                    uploadFile(ftpClient, sourceDir, file);
+                final List<FileMatcher.Match> files = FileMatcher.scan(new File(sourceDir.getRemote()), filePath, null);
+                timings.record("Find files", start);
+
+                start = System.nanoTime();
+                final FTPDeployManifest manifest = incremental ? readManifest(ftpClient) : null;
+                if (manifest != null) {
+                    timings.record("FTP read manifest", start);
+                }
+                final Set<String> deployedPaths = new HashSet<>();
+                final SortedSet<String> remoteDirectories = new TreeSet<>();
+                final Queue<FilePath> pending = new ConcurrentLinkedQueue<>();
+                for (final FileMatcher.Match match : files) {
+                    final FilePath file = sourceDir.child(match.getPath());
+                    final String remoteName = FilenameUtils.separatorsToUnix(match.getPath());
+                    if (manifest != null) {
+                        // Skip files whose content is identical to what the last deployment uploaded. A staged
+                        // deployment starts from an empty directory, so it has to upload everything.
+                        final String sitePath = getSitePath(remoteName);
+                        final String digest = file.digest();
+                        final long size = match.getSize();
+                        deployedPaths.add(sitePath);
+                        if (!staged && manifest.isUpToDate(sitePath, digest, size)) {
+                            continue;
+                        }
+                        manifest.put(sitePath, digest, size);
+                    }
+
+                    // Deployment to tomcat root requires removing root directory first. It has to be done
+                    // before any upload starts, otherwise other connections may race with the removal.
+                    // The staging directory never contains the old ROOT directory.
+                    if (!staged && isTomcatRootWar(absTargetDirectory, remoteName)) {
+                        final long removeStart = System.nanoTime();
+                        backgroundRemoval = removeTomcatRoot(ftpClient);
+                        timings.record("FTP remove directory", removeStart);
+                    }
+                    addDirectory(remoteDirectories, FilenameUtils.getPathNoEndSeparator(remoteName));
+                    pending.add(file);
+                }
+
+                if (manifest != null && !staged) {
+                    listener.getLogger().println(String.format("%d of %d files changed since last deployment",
+                            pending.size(), files.size()));
+                }
+
+                // Create all directories the upload needs in one pass, parents first, so that no upload has
+                // to check or create its directory.
+                start = System.nanoTime();
+                createDirectories(ftpClient, "", remoteDirectories);
+                timings.record("FTP create directories", start);
+
+                final int workers = Math.max(1, Math.min(connections, pending.size()));
+                if (workers > 1) {
+                    listener.getLogger().println(String.format("Uploading %d files using up to %d connections",
+                            pending.size(), workers));
+                }
+                uploadFiles(ftpClient, uploadDirectory, sourceDir, pending, workers);
+
+                if (staged) {
+                    start = System.nanoTime();
+                    backgroundRemoval = swapDirectory(ftpClient, uploadDirectory,
+                            StringUtils.removeEnd(absTargetDirectory, "/"), SITE_ROOT_PARENT + TRASH_PREFIX + stamp);
+                    stagingDirectory = null;
+                    timings.record("FTP swap directory", start);
+                }
+
+                if (manifest != null) {
+                    if (staged) {
+                        // Files which were not uploaded are gone with the old directory
+                        forgetStaleFiles(manifest, deployedPaths);
+                    } else if (deleteStaleFiles) {
+                        start = System.nanoTime();
+                        deleteStaleFiles(ftpClient, manifest, deployedPaths);
+                        timings.record("FTP delete stale files", start);
+                    }
+                    start = System.nanoTime();
+                    writeManifest(ftpClient, manifest);
+                    timings.record("FTP write manifest", start);
                 }
             } catch (IOException | InterruptedException e) {
                 throw new FTPException(e);
             } finally {
-                if (ftpClient.isConnected()) {
+                disconnect(ftpClient);
+                connectionBudget.release();
+                if (stagingDirectory != null) {
+                    // The deployment failed before the swap. The site is untouched, only the staging directory
+                    // has to go.
+                    backgroundRemoval = removeInBackground(stagingDirectory);
+                }
+                if (backgroundRemoval != null) {
+                    awaitRemoval(backgroundRemoval);
+                }
+            }
+
+            return timings;
+        }
+
+        private void connect(FTPClient ftpClient) throws IOException, FTPException {
+            transferProfile.configure(ftpClient);
+
+            long start = System.nanoTime();
+            final int portIndex = ftpUrl.lastIndexOf(':');
+            if (portIndex > 0) {
+                ftpClient.connect(ftpUrl.substring(0, portIndex), Integer.parseInt(ftpUrl.substring(portIndex + 1)));
+            } else {
+                ftpClient.connect(ftpUrl);
+            }
+            timings.record("FTP connect", start);
+            transferProfile.configureConnected(ftpClient);
+
+            start = System.nanoTime();
+            if (!ftpClient.login(ftpUserName, ftpPassword)) {
+                throw new FTPException("Fail to login");
+            }
+            timings.record("FTP login", start);
+
+            // Use passive mode to bypass client firewall
+            ftpClient.enterLocalPassiveMode();
+
+            // The transfer type sticks for the whole session, so set it once rather than before every file
+            if (!ftpClient.setFileType(FTP.BINARY_FILE_TYPE)) {
+                throw new FTPException("Fail to set FTP file type to binary");
+            }
+        }
+
+        private void disconnect(FTPClient ftpClient) {
+            if (ftpClient.isConnected()) {
+                try {
+                    ftpClient.disconnect();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    listener.getLogger().println("Fail to disconnect from FTP: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Add a directory and all its parents to the set of remote directories to create.
+         *
+         * @param directories Directories collected so far
+         * @param dir Directory relative to the base directory, using '/' as separator
+         */
+        private static void addDirectory(Set<String> directories, String dir) {
+            String current = dir;
+            while (StringUtils.isNotEmpty(current) && directories.add(current)) {
+                current = FilenameUtils.getPathNoEndSeparator(current);
+            }
+        }
+
+        /**
+         * Create the given directories in order. As the set is sorted, a parent is always created before its
+         * children. A directory that already exists is not an error. If a directory can't be created, the upload
+         * into it reports the failure.
+         *
+         * @param ftpClient FTP client
+         * @param base Prefix of the directories, either empty for the working directory or an absolute path
+         * @param directories Directories to create
+         */
+        private void createDirectories(FTPClient ftpClient, String base, SortedSet<String> directories)
+                throws IOException {
+            for (final String dir : directories) {
+                if (ftpClient.makeDirectory(base + dir)) {
+                    listener.getLogger().println("Created remote directory: " + base + dir);
+                }
+            }
+        }
+
+        /**
+         * Upload all pending files.
+         *
+         * @param ftpClient Connected FTP client in the target directory
+         * @param workingDirectory Absolute path of the target directory
+         * @param sourceDir Source directory
+         * @param pending Files to upload
+         * @param workers Number of concurrent connections
+         */
+        private void uploadFiles(FTPClient ftpClient, final String workingDirectory, final FilePath sourceDir,
+                                 Queue<FilePath> pending, int workers)
+                throws IOException, FTPException, InterruptedException {
+            runOnConnections(ftpClient, workingDirectory, pending, workers, "FTPDeployCommand.upload",
+                    new FTPTask<FilePath>() {
+                        @Override
+                        public void run(FTPClient client, FilePath file)
+                                throws IOException, FTPException, InterruptedException {
+                            uploadFile(client, workingDirectory, sourceDir, file);
+                        }
+                    });
+        }
+
+        /**
+         * Process all queued items over up to {@code workers} connections. Each extra worker opens its own
+         * logged-in connection with its own working directory state, and all of them drain the same queue. The
+         * given connection is used by the calling thread. Once any worker fails, the others stop taking new items.
+         *
+         * @param ftpClient Connected FTP client
+         * @param workingDirectory Working directory for the extra connections, or null to keep the login directory
+         * @param pending Items to process
+         * @param workers Number of concurrent connections
+         * @param threadName Name of the worker threads
+         * @param task Task to run for each item
+         */
+        private <T> void runOnConnections(FTPClient ftpClient, final String workingDirectory, final Queue<T> pending,
+                                          int workers, String threadName, final FTPTask<T> task)
+                throws IOException, FTPException, InterruptedException {
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            if (workers <= 1) {
+                drainQueue(ftpClient, pending, failed, task);
+                return;
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(workers - 1,
+                    new NamingThreadFactory(new DaemonThreadFactory(), threadName));
+            try {
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 1; i < workers; i++) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            if (!acquireConnection(pending, failed)) {
+                                return null;
+                            }
+                            final FTPClient workerClient = new FTPClient();
+                            try {
+                                connect(workerClient);
+                                if (workingDirectory != null
+                                        && !workerClient.changeWorkingDirectory(workingDirectory)) {
+                                    throw new FTPException("Fail to change working directory to: " + workingDirectory);
+                                }
+                                drainQueue(workerClient, pending, failed, task);
+                            } catch (Exception e) {
+                                failed.set(true);
+                                throw e;
+                            } finally {
+                                disconnect(workerClient);
+                                connectionBudget.release();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+
+                FTPException error = null;
+                try {
+                    drainQueue(ftpClient, pending, failed, task);
+                } catch (IOException e) {
+                    error = new FTPException(e);
+                } catch (FTPException e) {
+                    error = e;
+                }
+
+                for (final Future<Void> future : futures) {
                     try {
-                        ftpClient.disconnect();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        listener.getLogger().println("Fail to disconnect from FTP: " + e.getMessage());
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            error = toFTPException(e.getCause());
+                        }
                     }
                 }
+
+                if (error != null) {
+                    throw error;
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Take a connection from the budget for an extra worker, waiting while other connections use it up, e.g. a
+         * background removal. Gives up once there's nothing left for the worker to do.
+         *
+         * @param pending Items to process
+         * @param failed Whether any worker failed
+         * @return If a connection was taken, which has to be released once closed
+         */
+        private boolean acquireConnection(Queue<?> pending, AtomicBoolean failed) throws InterruptedException {
+            while (!failed.get() && !pending.isEmpty()) {
+                if (connectionBudget.tryAcquire(CONNECTION_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private FTPException toFTPException(Throwable cause) {
+            if (cause instanceof FTPException) {
+                return (FTPException) cause;
+            } else if (cause instanceof Exception) {
+                return new FTPException((Exception) cause);
+            } else {
+                return new FTPException(String.valueOf(cause));
+            }
+        }
+
+        private <T> void drainQueue(FTPClient ftpClient, Queue<T> pending, AtomicBoolean failed, FTPTask<T> task)
+                throws IOException, FTPException, InterruptedException {
+            try {
+                T item;
+                while (!failed.get() && (item = pending.poll()) != null) {
+                    task.run(ftpClient, item);
+                }
+            } catch (IOException | FTPException | InterruptedException e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        /**
+         * Remove the Tomcat ROOT directory before ROOT.war is uploaded. The directory is first moved out of the
+         * web apps directory with a single rename, so that the upload can start right away while the old tree is
+         * deleted in the background. If the server refuses the rename, the tree is deleted in place before
+         * returning.
+         *
+         * @param ftpClient FTP client
+         * @return The background removal to wait for, or null if there is nothing left to remove
+         */
+        private Future<?> removeTomcatRoot(FTPClient ftpClient) throws IOException, FTPException, InterruptedException {
+            if (!remoteDirectoryExists(ftpClient, TOMCAT_ROOT_DIR)) {
+                return null;
+            }
+
+            final String trashDir = SITE_ROOT_PARENT + TRASH_PREFIX + System.currentTimeMillis();
+            if (!ftpClient.rename(TOMCAT_ROOT_DIR, trashDir)) {
+                listener.getLogger().println(String.format("Fail to move %s away, removing it in place",
+                        TOMCAT_ROOT_DIR));
+                removeFtpDirectory(ftpClient, TOMCAT_ROOT_DIR);
+                return null;
+            }
+
+            listener.getLogger().println(String.format("Moved %s to %s", TOMCAT_ROOT_DIR, trashDir));
+            return removeInBackground(trashDir);
+        }
+
+        /**
+         * Swap a fully uploaded staging directory in place of the target directory with at most two renames. The
+         * old target directory is moved outside the site and removed in the background. If the staging directory
+         * can't be moved in, the old target directory is moved back.
+         *
+         * @param ftpClient FTP client
+         * @param stagingDir Absolute path of the staging directory
+         * @param targetDir Absolute path of the target directory
+         * @param trashDir Absolute path to move the old target directory to
+         * @return The background removal of the old target directory, or null if there was none
+         */
+        private Future<?> swapDirectory(FTPClient ftpClient, String stagingDir, String targetDir, String trashDir)
+                throws IOException, FTPException {
+            // Leave the directories being renamed
+            if (!ftpClient.changeWorkingDirectory(SITE_ROOT_PARENT)) {
+                throw new FTPException("Fail to change working directory to: " + SITE_ROOT_PARENT);
+            }
+
+            final boolean hasOld = remoteDirectoryExists(ftpClient, targetDir);
+            if (hasOld && !ftpClient.rename(targetDir, trashDir)) {
+                throw new FTPException(String.format("Fail to move %s to %s", targetDir, trashDir));
+            }
+            if (!ftpClient.rename(stagingDir, targetDir)) {
+                if (hasOld && !ftpClient.rename(trashDir, targetDir)) {
+                    throw new FTPException(String.format("Fail to move %s to %s, the previous deployment is left in %s",
+                            stagingDir, targetDir, trashDir));
+                }
+                throw new FTPException(String.format("Fail to move %s to %s", stagingDir, targetDir));
             }
+            listener.getLogger().println(String.format("Swapped %s in place of %s", stagingDir, targetDir));
 
-            return null;
+            return hasOld ? removeInBackground(trashDir) : null;
         }
 
         /**
-         * Remove FTP directory recursively.
+         * Remove a directory on a connection of its own, so that the caller can carry on while it's being removed.
+         * The removal takes its connections out of the same budget as the upload, so that both together never use
+         * more than {@code connections} connections.
+         *
+         * @param dir Directory to remove
+         * @return The background removal to wait for
+         */
+        private Future<?> removeInBackground(final String dir) {
+            listener.getLogger().println(String.format("Removing %s in the background", dir));
+            final ExecutorService executor = Executors.newSingleThreadExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "FTPDeployCommand.remove"));
+            try {
+                return executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        connectionBudget.acquire();
+                        final long start = System.nanoTime();
+                        final FTPClient removeClient = new FTPClient();
+                        try {
+                            connect(removeClient);
+                            removeFtpDirectory(removeClient, dir);
+                        } finally {
+                            disconnect(removeClient);
+                            connectionBudget.release();
+                        }
+                        timings.record("FTP background remove", start);
+                        return null;
+                    }
+                });
+            } finally {
+                // Let the submitted removal finish, but don't accept anything else
+                executor.shutdown();
+            }
+        }
+
+        /**
+         * Wait for a background removal. The deployment itself is already complete at this point, so a failure
+         * only leaves an unused directory outside the site behind and is reported as a warning.
+         */
+        private void awaitRemoval(Future<?> removal) {
+            try {
+                removal.get();
+            } catch (ExecutionException e) {
+                listener.getLogger().println("Warning: fail to remove old directory: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                removal.cancel(true);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean remoteDirectoryExists(FTPClient ftpClient, String dir) throws IOException {
+            final String name = FilenameUtils.getName(dir);
+            for (final FTPFile file : ftpClient.listFiles(FilenameUtils.getFullPathNoEndSeparator(dir))) {
+                if (file.isDirectory() && name.equals(file.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Remove FTP directory recursively. The whole tree is listed first, then the files are deleted over up to
+         * {@code connections} connections, and finally the directories are removed bottom-up.
+         *
          * @param ftpClient FTP client
          * @param dir Directory to remove
-         * @throws IOException
          */
         private void removeFtpDirectory(FTPClient ftpClient, String dir)
-                throws IOException, FTPException {
+                throws IOException, FTPException, InterruptedException {
             listener.getLogger().println("Removing remote directory: " + dir);
 
-            FTPFile[] subFiles = ftpClient.listFiles(dir);
-            if (subFiles.length > 0) {
-                for (FTPFile ftpFile : subFiles) {
-                    String fileName = ftpFile.getName();
+            // Breadth first, so parents always come before their children
+            final List<String> directories = new ArrayList<>();
+            final Queue<String> files = new ConcurrentLinkedQueue<>();
+            directories.add(dir);
+            for (int i = 0; i < directories.size(); i++) {
+                final String current = directories.get(i);
+                for (final FTPFile ftpFile : ftpClient.listFiles(current)) {
+                    final String fileName = ftpFile.getName();
                     if (fileName.equals(".") || fileName.equals("..")) {
-                        // Skip
                         continue;
                     }
 
-                    String fullFileName = dir + "/" + fileName;
+                    final String fullFileName = current + "/" + fileName;
                     if (ftpFile.isDirectory()) {
-                        // Remove sub directory recursively
-                        removeFtpDirectory(ftpClient, fullFileName);
+                        directories.add(fullFileName);
                     } else {
-                        // Delete regular file
-                        listener.getLogger().println("Removing remote file: " + fullFileName);
-
-                        if (!ftpClient.deleteFile(fullFileName)) {
-                            throw new FTPException("Fail to delete file: " + fullFileName);
-                        }
+                        files.add(fullFileName);
                     }
                 }
             }
 
-            if (!ftpClient.removeDirectory(dir)) {
-                throw new FTPException("Fail to remove directory: " + dir);
+            final int total = files.size();
+            listener.getLogger().println(String.format("Found %d files in %d directories under %s",
+                    total, directories.size(), dir));
+
+            final AtomicInteger removed = new AtomicInteger();
+            final int workers = Math.max(1, Math.min(connections, total));
+            runOnConnections(ftpClient, null, files, workers, "FTPDeployCommand.remove", new FTPTask<String>() {
+                @Override
+                public void run(FTPClient client, String file) throws IOException, FTPException {
+                    if (!client.deleteFile(file)) {
+                        throw new FTPException("Fail to delete file: " + file);
+                    }
+                    final int count = removed.incrementAndGet();
+                    if (count % REMOVE_PROGRESS_INTERVAL == 0) {
+                        listener.getLogger().println(String.format("Removed %d of %d files", count, total));
+                    }
+                }
+            });
+
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                final String current = directories.get(i);
+                if (!ftpClient.removeDirectory(current)) {
+                    throw new FTPException("Fail to remove directory: " + current);
+                }
             }
+            listener.getLogger().println(String.format("Removed %d files and %d directories",
+                    removed.get(), directories.size()));
         }
 
-        private void uploadFile(FTPClient ftpClient, FilePath sourceDir, FilePath file)
+        /**
+         * Upload a file. If the transfer is interrupted, the connection is re-established and the upload is
+         * resumed from what this upload has already put on the server, up to {@code maxAttempts} attempts in total.
+         * An upload which never got any data through starts over with STOR, as the remote file may still be the copy
+         * of a previous deployment.
+         *
+         * @param ftpClient FTP client in the working directory
+         * @param workingDirectory Absolute path of the working directory, to return to after reconnecting
+         * @param sourceDir Source directory
+         * @param file File to upload
+         */
+        private void uploadFile(FTPClient ftpClient, String workingDirectory, FilePath sourceDir, FilePath file)
                 throws IOException, FTPException, InterruptedException {
 
-            final String remoteName = FilenameUtils.separatorsToUnix(FilePathUtils.trimDirectoryPrefix(sourceDir, file));
+            final String remoteName = getRemoteName(sourceDir, file);
             listener.getLogger().println(String.format("Uploading %s", remoteName));
 
-            // Need some preparation in some cases
-            prepareDirectory(ftpClient, remoteName);
+            final long start = System.nanoTime();
+            long delay = retryDelay;
+            // Number of bytes of the remote file written by this upload, at most
+            long uploaded = 0;
+            for (int attempt = 1; ; attempt++) {
+                long offset = 0;
+                CountingInputStream stream = null;
+                try {
+                    if (attempt > 1) {
+                        reconnect(ftpClient, workingDirectory);
+                        if (uploaded > 0) {
+                            offset = getResumeOffset(ftpClient, remoteName, uploaded);
+                        }
+                        if (offset > 0) {
+                            listener.getLogger().println(String.format("Resuming upload of %s at byte %d",
+                                    remoteName, offset));
+                        }
+                    }
+                    try (InputStream input = file.read()) {
+                        IOUtils.skipFully(input, offset);
+                        stream = new CountingInputStream(input);
+                        transferFile(ftpClient, stream, remoteName, offset > 0);
+                    }
+                    timings.record("FTP upload", start, stream.getByteCount());
+                    return;
+                } catch (IOException e) {
+                    // Data is only read once the server accepted the STOR or APPE, which means the remote file now
+                    // starts with what this upload sent
+                    if (stream != null && stream.getByteCount() > 0) {
+                        uploaded = offset + stream.getByteCount();
+                    }
+                    if (attempt >= maxAttempts) {
+                        throw e;
+                    }
+                    listener.getLogger().println(String.format("Upload of %s interrupted: %s. Retrying in %d ms "
+                            + "(attempt %d of %d)", remoteName, e.getMessage(), delay, attempt + 1, maxAttempts));
+                }
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+
+        /**
+         * Send a stream to the remote file, appending to it or replacing it.
+         *
+         * @throws IOException If the transfer is interrupted and can be retried
+         * @throws FTPException If the server rejects the file
+         */
+        private void transferFile(FTPClient ftpClient, InputStream stream, String remoteName, boolean append)
+                throws IOException, FTPException {
+            final boolean stored = append
+                    ? ftpClient.appendFile(remoteName, stream)
+                    : ftpClient.storeFile(remoteName, stream);
+            if (!stored) {
+                if (FTPReply.isNegativeTransient(ftpClient.getReplyCode())) {
+                    throw new IOException(ftpClient.getReplyString().trim());
+                }
+                throw new FTPException("Fail to upload file to: " + remoteName);
+            }
+        }
 
-            if (!ftpClient.setFileType(FTP.BINARY_FILE_TYPE)) {
-                throw new FTPException("Fail to set FTP file type to binary");
+        private void reconnect(FTPClient ftpClient, String workingDirectory) throws IOException, FTPException {
+            disconnect(ftpClient);
+            connect(ftpClient);
+            if (!ftpClient.changeWorkingDirectory(workingDirectory)) {
+                throw new FTPException("Fail to change working directory to: " + workingDirectory);
             }
+        }
 
-            try (InputStream stream = file.read()) {
-                if (!ftpClient.storeFile(remoteName, stream)) {
-                    throw new FTPException("Fail to upload file to: " + remoteName);
+        /**
+         * Get the number of bytes of an interrupted upload which are already on the server. Zero means the upload
+         * has to start over.
+         *
+         * @param uploaded Number of bytes this upload sent, the remote file may not hold more of them
+         */
+        private long getResumeOffset(FTPClient ftpClient, String remoteName, long uploaded) throws IOException {
+            long remoteSize = -1;
+            if (FTPReply.isPositiveCompletion(ftpClient.sendCommand("SIZE", remoteName))) {
+                try {
+                    remoteSize = Long.parseLong(ftpClient.getReplyString().substring(4).trim());
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    remoteSize = -1;
                 }
             }
+            if (remoteSize < 0) {
+                // SIZE is an extension, fall back to listing the file
+                final FTPFile[] remoteFiles = ftpClient.listFiles(remoteName);
+                if (remoteFiles.length == 1 && remoteFiles[0].isFile()) {
+                    remoteSize = remoteFiles[0].getSize();
+                }
+            }
+            return remoteSize > 0 ? Math.min(remoteSize, uploaded) : 0;
         }
 
-        private void prepareDirectory(FTPClient ftpClient, String fileName)
-                throws IOException, FTPException {
-            // Deployment to tomcat root requires removing root directory first
-            final String targetFilePath = FilenameUtils.concat(ftpClient.printWorkingDirectory(), fileName);
-            if (targetFilePath.equalsIgnoreCase(FilenameUtils.separatorsToSystem(TOMCAT_ROOT_WAR))) {
-                removeFtpDirectory(ftpClient, TOMCAT_ROOT_DIR);
+        /**
+         * Read the manifest of last deployment. An empty manifest is returned if it doesn't exist.
+         */
+        private FTPDeployManifest readManifest(FTPClient ftpClient) throws IOException {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            if (!ftpClient.retrieveFile(SITE_ROOT + FTPDeployManifest.FILE_NAME, stream)) {
+                listener.getLogger().println("No deploy manifest found. All files will be uploaded.");
+                return new FTPDeployManifest();
+            }
+            return FTPDeployManifest.read(new ByteArrayInputStream(stream.toByteArray()));
+        }
+
+        private void writeManifest(FTPClient ftpClient, FTPDeployManifest manifest) throws IOException, FTPException {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            manifest.write(stream);
+            if (!ftpClient.storeFile(SITE_ROOT + FTPDeployManifest.FILE_NAME,
+                    new ByteArrayInputStream(stream.toByteArray()))) {
+                throw new FTPException("Fail to upload deploy manifest");
             }
         }
+
+        /**
+         * Delete files in the target directory which were deployed last time but are not part of this deployment.
+         */
+        private void deleteStaleFiles(FTPClient ftpClient, FTPDeployManifest manifest, Set<String> deployedPaths)
+                throws IOException {
+            final String targetPrefix = getSitePath("");
+            for (final String path : new ArrayList<>(manifest.getPaths())) {
+                if (!path.startsWith(targetPrefix) || deployedPaths.contains(path)) {
+                    continue;
+                }
+
+                listener.getLogger().println("Removing stale remote file: " + path);
+                if (!ftpClient.deleteFile(SITE_ROOT + path)) {
+                    listener.getLogger().println("Fail to delete stale file: " + path);
+                }
+                manifest.remove(path);
+            }
+        }
+
+        /**
+         * Drop manifest entries in the target directory which are not part of this deployment, without touching
+         * the server.
+         */
+        private void forgetStaleFiles(FTPDeployManifest manifest, Set<String> deployedPaths) {
+            final String targetPrefix = getSitePath("");
+            for (final String path : new ArrayList<>(manifest.getPaths())) {
+                if (path.startsWith(targetPrefix) && !deployedPaths.contains(path)) {
+                    manifest.remove(path);
+                }
+            }
+        }
+
+        /**
+         * Get the path of a deployed file relative to the site root, as recorded in the deploy manifest.
+         */
+        private String getSitePath(String remoteName) {
+            final String path = FilenameUtils.separatorsToUnix(
+                    FilenameUtils.concat(Util.fixNull(targetDirectory), remoteName));
+            return StringUtils.removeStart(Util.fixNull(path), "/");
+        }
+
+        private String getRemoteName(FilePath sourceDir, FilePath file) {
+            return FilenameUtils.separatorsToUnix(FilePathUtils.trimDirectoryPrefix(sourceDir, file));
+        }
+
+        private boolean isTomcatRootWar(String workingDirectory, String fileName) {
+            final String targetFilePath = FilenameUtils.concat(workingDirectory, fileName);
+            return targetFilePath != null
+                    && targetFilePath.equalsIgnoreCase(FilenameUtils.separatorsToSystem(TOMCAT_ROOT_WAR));
+        }
     }
 
     public interface IFTPDeployCommandData extends IBaseCommandData {
@@ -235,5 +923,15 @@ public class FTPDeployCommand implements ICommand<FTPDeployCommand.IFTPDeployCom
         String getSourceDirectory();
 
         String getTargetDirectory();
+
+        int getFtpConnections();
+
+        boolean isIncrementalDeploy();
+
+        boolean isDeleteStaleFiles();
+
+        boolean isStagedDeploy();
+
+        FTPTransferProfile getFtpTransferProfile();
     }
 }
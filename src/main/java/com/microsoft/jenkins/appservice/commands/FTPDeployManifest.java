@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Checksum manifest of the files deployed through FTP, stored alongside the site content.
+ *
+ * Each line records the MD5 digest, the size and the path (relative to the site root) of a deployed file.
+ */
+public final class FTPDeployManifest {
+
+    public static final String FILE_NAME = ".azure-deploy-manifest";
+
+    private static final String HEADER = "# Azure App Service deploy manifest v1";
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    public static FTPDeployManifest read(InputStream stream) throws IOException {
+        final FTPDeployManifest manifest = new FTPDeployManifest();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (StringUtils.isBlank(line) || line.startsWith("#")) {
+                continue;
+            }
+
+            final String[] parts = line.split(" ", 3);
+            if (parts.length != 3) {
+                throw new IOException("Malformed deploy manifest line: " + line);
+            }
+            try {
+                manifest.put(parts[2], parts[0], Long.parseLong(parts[1]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed deploy manifest line: " + line, e);
+            }
+        }
+        return manifest;
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        final Writer writer = new OutputStreamWriter(stream, Charsets.UTF_8);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            writer.write(String.format("%s %d %s", entry.getValue().digest, entry.getValue().size, entry.getKey()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public void put(String path, String digest, long size) {
+        entries.put(path, new Entry(digest, size));
+    }
+
+    public void remove(String path) {
+        entries.remove(path);
+    }
+
+    public boolean isUpToDate(String path, String digest, long size) {
+        final Entry entry = entries.get(path);
+        return entry != null && entry.size == size && entry.digest.equalsIgnoreCase(digest);
+    }
+
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    private static final class Entry {
+        private final String digest;
+        private final long size;
+
+        private Entry(String digest, long size) {
+            this.digest = digest;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.appservice.commands;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.io.Serializable;
+import java.net.SocketException;
+
+/**
+ * Socket and buffer settings of FTP connections used for deployment.
+ * <p>
+ * The defaults favor uploads over high-bandwidth, high-latency links: large stream and socket buffers so that the
+ * TCP window isn't the limit, TCP_NODELAY so that the many small control commands aren't delayed, keep-alive NOOPs on
+ * the control connection so that firewalls don't drop it during a long STOR, and a data timeout so that a stalled
+ * transfer fails and gets resumed rather than hanging. Each setting can be overridden with a system property on the
+ * master named {@code com.microsoft.jenkins.appservice.commands.FTPTransferProfile.<setting>}, where zero restores
+ * the commons-net default.
+ */
+public class FTPTransferProfile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String PROPERTY_PREFIX = FTPTransferProfile.class.getName() + ".";
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    public static final int DEFAULT_SOCKET_BUFFER_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30 * 1000;
+    public static final int DEFAULT_DATA_TIMEOUT = 5 * 60 * 1000;
+    public static final int DEFAULT_CONTROL_KEEP_ALIVE = 60;
+
+    private final int bufferSize;
+    private final int socketBufferSize;
+    private final boolean tcpNoDelay;
+    private final int connectTimeout;
+    private final int dataTimeout;
+    private final int controlKeepAlive;
+
+    public FTPTransferProfile() {
+        this(Integer.getInteger(PROPERTY_PREFIX + "bufferSize", DEFAULT_BUFFER_SIZE),
+                Integer.getInteger(PROPERTY_PREFIX + "socketBufferSize", DEFAULT_SOCKET_BUFFER_SIZE),
+                Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "tcpNoDelay", "true")),
+                Integer.getInteger(PROPERTY_PREFIX + "connectTimeout", DEFAULT_CONNECT_TIMEOUT),
+                Integer.getInteger(PROPERTY_PREFIX + "dataTimeout", DEFAULT_DATA_TIMEOUT),
+                Integer.getInteger(PROPERTY_PREFIX + "controlKeepAlive", DEFAULT_CONTROL_KEEP_ALIVE));
+    }
+
+    /**
+     * @param bufferSize Size in bytes of the buffer between local files and the data connection
+     * @param socketBufferSize Size in bytes of the send and receive buffers of data sockets
+     * @param tcpNoDelay Whether to disable Nagle's algorithm on the control connection
+     * @param connectTimeout Timeout in milliseconds to establish a connection
+     * @param dataTimeout Timeout in milliseconds of reads on data connections
+     * @param controlKeepAlive Interval in seconds between NOOPs on the control connection during a transfer
+     */
+    public FTPTransferProfile(int bufferSize, int socketBufferSize, boolean tcpNoDelay, int connectTimeout,
+                              int dataTimeout, int controlKeepAlive) {
+        this.bufferSize = Math.max(0, bufferSize);
+        this.socketBufferSize = Math.max(0, socketBufferSize);
+        this.tcpNoDelay = tcpNoDelay;
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.dataTimeout = Math.max(0, dataTimeout);
+        this.controlKeepAlive = Math.max(0, controlKeepAlive);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getDataTimeout() {
+        return dataTimeout;
+    }
+
+    public int getControlKeepAlive() {
+        return controlKeepAlive;
+    }
+
+    /**
+     * Apply the settings which take effect when connecting. Call before {@link FTPClient#connect}.
+     */
+    public void configure(FTPClient ftpClient) {
+        ftpClient.setBufferSize(bufferSize);
+        ftpClient.setSendDataSocketBufferSize(socketBufferSize);
+        ftpClient.setReceieveDataSocketBufferSize(socketBufferSize);
+        ftpClient.setConnectTimeout(connectTimeout);
+        ftpClient.setDataTimeout(dataTimeout);
+        ftpClient.setControlKeepAliveTimeout(controlKeepAlive);
+    }
+
+    /**
+     * Apply the settings of the control socket. Call after {@link FTPClient#connect}.
+     */
+    public void configureConnected(FTPClient ftpClient) throws SocketException {
+        ftpClient.setTcpNoDelay(tcpNoDelay);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("buffer %d bytes, socket buffers %d bytes, TCP_NODELAY %s, connect timeout %d ms, "
+                        + "data timeout %d ms, control keep-alive %d s",
+                bufferSize, socketBufferSize, tcpNoDelay, connectTimeout, dataTimeout, controlKeepAlive);
+    }
+}
@@ -6,111 +6,283 @@
 package com.microsoft.jenkins.appservice.commands;
 
 import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import com.microsoft.azure.management.appservice.PublishingProfile;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Util;
 import hudson.model.AbstractBuild;
+import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.git.Branch;
+import hudson.plugins.git.GitException;
 import hudson.plugins.git.GitTool;
 import hudson.remoting.VirtualChannel;
+import hudson.slaves.WorkspaceList;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheBuildIterator;
 import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.treewalk.FileTreeIterator;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FS;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
-import com.microsoft.jenkins.appservice.util.FilePathUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import com.microsoft.jenkins.appservice.util.FileMatcher;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCommandData> {
 
     private static final String DEPLOY_REPO = ".azure-deploy";
+    private static final String DEPLOY_REPO_CACHE = "caches/azure-app-service-";
     private static final String DEPLOY_COMMIT_MESSAGE = "Deploy ${BUILD_TAG}";
     private static final String DEPLOY_BRANCH = "master";
     private static final String DEPLOY_REMOTE_BRANCH = "origin/" + DEPLOY_BRANCH;
+    private static final String DEPLOY_REFSPEC = "+refs/heads/*:refs/remotes/origin/*";
 
     @Override
     public void execute(IGitDeployCommandData context) {
         try {
             final PublishingProfile pubProfile = context.getPublishingProfile();
-            final Run run = context.getRun();
-            final TaskListener listener = context.getListener();
-            final EnvVars env = run.getEnvironment(listener);
             final FilePath ws = context.getWorkspace();
             if (ws == null) {
                 context.logError("Workspace is null");
                 context.setDeploymentState(DeploymentState.HasError);
                 return;
             }
-            final FilePath repo = ws.child(DEPLOY_REPO);
-            final String gitExe = getGitExe(run, listener);
+            final WorkspaceList.Lease lease = allocateDeployRepository(ws, pubProfile.gitUrl());
+            try {
+                deploy(context, lease.path);
+            } finally {
+                lease.release();
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            context.logError("Fail to deploy using Git: " + e.getMessage());
+            context.setDeploymentState(DeploymentState.HasError);
+        }
+    }
 
-            GitClient git = Git.with(listener, env)
-                .in(repo)
-                .using(gitExe)
-                .getClient();
+    private void deploy(IGitDeployCommandData context, FilePath repo)
+            throws IOException, InterruptedException {
+        final PublishingProfile pubProfile = context.getPublishingProfile();
+        final Run run = context.getRun();
+        final TaskListener listener = context.getListener();
+        final EnvVars env = run.getEnvironment(listener);
+        final FilePath ws = context.getWorkspace();
+
+        // Created on the master, as the password is kept as a Secret which needs the master's keys
+        final StandardUsernamePasswordCredentials credentials = new UsernamePasswordCredentialsImpl(
+                CredentialsScope.SYSTEM, "", "", pubProfile.gitUsername(), pubProfile.gitPassword());
+
+        final DeploymentTimings timings = repo.act(new GitDeployCommandOnSlave(
+                listener,
+                env,
+                getGitExe(run, env, listener),
+                pubProfile.gitUrl(),
+                credentials,
+                repo,
+                ws.child(Util.fixNull(context.getSourceDirectory())),
+                Util.fixNull(context.getTargetDirectory()),
+                context.getFilePath(),
+                env.expand(DEPLOY_COMMIT_MESSAGE),
+                context.isInMemoryGitCommit()
+        ));
+        context.recordTimings(timings);
+
+        context.setDeploymentState(DeploymentState.Success);
+    }
 
-            git.addCredentials(pubProfile.gitUrl(), new UsernamePasswordCredentialsImpl(
-                    CredentialsScope.SYSTEM, "", "", pubProfile.gitUsername(), pubProfile.gitPassword()));
+    /**
+     * Runs the whole deployment on the node holding the deploy repository, so that it takes a single remoting call
+     * rather than one per git operation.
+     */
+    private static final class GitDeployCommandOnSlave extends MasterToSlaveCallable<DeploymentTimings, IOException> {
+
+        private final TaskListener listener;
+        private final EnvVars env;
+        private final String gitExe;
+        private final String gitUrl;
+        private final StandardUsernamePasswordCredentials credentials;
+        private final FilePath repo;
+        private final FilePath sourceDir;
+        private final String targetDir;
+        private final String filesPattern;
+        private final String commitMessage;
+        private final boolean inMemoryGitCommit;
+
+        private GitDeployCommandOnSlave(
+                TaskListener listener,
+                EnvVars env,
+                String gitExe,
+                String gitUrl,
+                StandardUsernamePasswordCredentials credentials,
+                FilePath repo,
+                FilePath sourceDir,
+                String targetDir,
+                String filesPattern,
+                String commitMessage,
+                boolean inMemoryGitCommit) {
+            this.listener = listener;
+            this.env = env;
+            this.gitExe = gitExe;
+            this.gitUrl = gitUrl;
+            this.credentials = credentials;
+            this.repo = repo;
+            this.sourceDir = sourceDir;
+            this.targetDir = targetDir;
+            this.filesPattern = filesPattern;
+            this.commitMessage = commitMessage;
+            this.inMemoryGitCommit = inMemoryGitCommit;
+        }
 
-            git.clone_().url(pubProfile.gitUrl()).execute();
+        @Override
+        public DeploymentTimings call() throws IOException {
+            try {
+                return deploy();
+            } catch (InterruptedException | URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
 
-            // Sometimes remote repository is bare and the master branch doesn't exist
-            Set<Branch> branches = git.getRemoteBranches();
-            for (Branch branch : branches) {
-                if (branch.getName().equals(DEPLOY_REMOTE_BRANCH)) {
-                    git.checkout().ref(DEPLOY_BRANCH).execute();
-                    break;
+        private DeploymentTimings deploy() throws IOException, InterruptedException, URISyntaxException {
+            final GitClient git = Git.with(listener, env)
+                    .in(repo)
+                    .using(gitExe)
+                    .getClient();
+
+            git.addCredentials(gitUrl, credentials);
+
+            final DeploymentTimings timings = new DeploymentTimings();
+            long start = System.nanoTime();
+            prepareDeployRepository(git, repo, gitUrl, listener);
+            timings.record("Git prepare repository", start);
+
+            start = System.nanoTime();
+            if (inMemoryGitCommit) {
+                if (!commitFiles(git, sourceDir, targetDir, filesPattern, commitMessage)) {
+                    timings.record("Git commit", start);
+                    listener.getLogger().println("Deploy repository is up-to-date. Nothing to commit.");
+                    return timings;
+                }
+            } else {
+                // Sometimes remote repository is bare and the master branch doesn't exist
+                Set<Branch> branches = git.getRemoteBranches();
+                for (Branch branch : branches) {
+                    if (branch.getName().equals(DEPLOY_REMOTE_BRANCH)) {
+                        // Reset local branch to the remote one, discarding anything left by a previous deployment
+                        git.checkout().ref(DEPLOY_REMOTE_BRANCH).branch(DEPLOY_BRANCH).deleteBranchIfExist(true).execute();
+                        git.clean();
+                        break;
+                    }
                 }
-            }
 
-            cleanWorkingDirectory(git);
+                copyAndAddFiles(git, repo, sourceDir, targetDir, filesPattern);
 
-            final FilePath sourceDir = ws.child(Util.fixNull(context.getSourceDirectory()));
-            final String targetDir = Util.fixNull(context.getTargetDirectory());
-            copyAndAddFiles(git, repo, sourceDir, targetDir, context.getFilePath());
+                if (!isWorkingTreeChanged(git)) {
+                    timings.record("Git commit", start);
+                    listener.getLogger().println("Deploy repository is up-to-date. Nothing to commit.");
+                    return timings;
+                }
 
-            if (!isWorkingTreeChanged(git)) {
-                context.logStatus("Deploy repository is up-to-date. Nothing to commit.");
-                context.setDeploymentState(DeploymentState.Success);
-                return;
+                git.commit(commitMessage);
             }
+            timings.record("Git commit", start);
 
-            git.commit(env.expand(DEPLOY_COMMIT_MESSAGE));
+            start = System.nanoTime();
+            git.push().to(new URIish(gitUrl)).execute();
+            timings.record("Git push", start);
+            return timings;
+        }
+    }
 
-            git.push().to(new URIish(pubProfile.gitUrl())).execute();
+    /**
+     * Allocate the deploy repository directory. It's kept in a per-app cache directory on the node between builds,
+     * and leased so that concurrent builds on the same node don't share it.
+     *
+     * @param ws Workspace
+     * @param gitUrl Git URL of the app
+     * @return Lease of the deploy repository directory
+     * @throws InterruptedException
+     */
+    private WorkspaceList.Lease allocateDeployRepository(FilePath ws, String gitUrl) throws InterruptedException {
+        final Computer computer = ws.toComputer();
+        final Node node = computer == null ? null : computer.getNode();
+        final FilePath root = node == null ? null : node.getRootPath();
+        if (root == null) {
+            // One directory per app, so that concurrent deployments to several apps don't share it
+            return WorkspaceList.Lease.createDummyLease(ws.child(DEPLOY_REPO + "-" + Util.getDigestOf(gitUrl)));
+        }
 
-            context.setDeploymentState(DeploymentState.Success);
+        return computer.getWorkspaceList().allocate(root.child(DEPLOY_REPO_CACHE + Util.getDigestOf(gitUrl)));
+    }
 
-        } catch (IOException | InterruptedException | URISyntaxException e) {
-            e.printStackTrace();
-            context.logError("Fail to deploy using Git: " + e.getMessage());
-            context.setDeploymentState(DeploymentState.HasError);
+    /**
+     * Bring the deploy repository up to date with the remote. A cached repository is fetched, otherwise a shallow
+     * clone is made. The cache is dropped and cloned again if it cannot be fetched.
+     *
+     * @param git Git client
+     * @param repo Path to git repo
+     * @param gitUrl Git URL of the app
+     * @param listener Task listener
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws URISyntaxException
+     */
+    @Restricted(NoExternalUse.class)
+    static void prepareDeployRepository(GitClient git, FilePath repo, String gitUrl, TaskListener listener)
+            throws IOException, InterruptedException, URISyntaxException {
+        if (repo.child(".git").isDirectory()) {
+            try {
+                listener.getLogger().println("Fetching cached deploy repository: " + repo.getRemote());
+                git.fetch_()
+                        .from(new URIish(gitUrl), Collections.singletonList(new RefSpec(DEPLOY_REFSPEC)))
+                        .prune()
+                        .shallow(true)
+                        .depth(1)
+                        .execute();
+                return;
+            } catch (GitException e) {
+                listener.getLogger().println("Fail to fetch cached deploy repository, cloning again: " + e.getMessage());
+                repo.deleteContents();
+            }
         }
+
+        git.clone_().url(gitUrl).shallow().depth(1).execute();
     }
 
-    private String getGitExe(Run run, TaskListener listener) throws IOException, InterruptedException {
+    private String getGitExe(Run run, EnvVars env, TaskListener listener) throws IOException, InterruptedException {
         GitTool tool = GitTool.getDefaultInstallation();
 
-        final EnvVars env = run.getEnvironment(listener);
         if (env != null) {
             tool = tool.forEnvironment(env);
         }
@@ -127,41 +299,65 @@ public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCom
     }
 
     /**
-     * Remove all existing files in the working directory, from both git and disk
+     * Sync selected files to git working directory and stage them.
      *
-     * This method is modified from RmCommand in JGit.
+     * All files are synced in a single call on the node holding the repository, with one index update. Files whose
+     * content matches the staged blob are left untouched, and tracked files no longer selected are removed from both
+     * git and disk.
      *
      * @param git Git client
+     * @param repo Path to git repo
+     * @param sourceDir Source directory
+     * @param targetDir Target directory
+     * @param filesPattern Files name pattern
      * @throws IOException
      * @throws InterruptedException
      */
-    private void cleanWorkingDirectory(GitClient git) throws IOException, InterruptedException {
-        git.withRepository(new CleanWorkingDirectoryCallback());
+    @Restricted(NoExternalUse.class)
+    static void copyAndAddFiles(GitClient git, FilePath repo, FilePath sourceDir, String targetDir, String filesPattern)
+            throws IOException, InterruptedException {
+        git.withRepository(new CopyAndAddFilesCallback(sourceDir, targetDir, filesPattern));
     }
 
-    private static final class CleanWorkingDirectoryCallback implements RepositoryCallback<Void> {
+    private static final class CopyAndAddFilesCallback implements RepositoryCallback<Void> {
+        private final FilePath sourceDir;
+        private final String targetDir;
+        private final String filesPattern;
+
+        private CopyAndAddFilesCallback(FilePath sourceDir, String targetDir, String filesPattern) {
+            this.sourceDir = sourceDir;
+            this.targetDir = targetDir;
+            this.filesPattern = filesPattern;
+        }
+
         @Override
         public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
-            DirCache dc = null;
+            final Map<String, File> sources = new HashMap<>();
+            final File baseDir = new File(sourceDir.getRemote());
+            for (final FileMatcher.Match file : FileMatcher.scan(baseDir, filesPattern, null)) {
+                // Git always use Unix file path
+                final String filePathInGit = FilenameUtils.separatorsToUnix(
+                        FilenameUtils.concat(targetDir, file.getPath()));
+                sources.put(filePathInGit, new File(baseDir, file.getPath()));
+            }
 
-            try (final TreeWalk tw = new TreeWalk(repo)) {
+            DirCache dc = null;
+            try (final ObjectInserter inserter = repo.newObjectInserter()) {
                 dc = repo.lockDirCache();
-                DirCacheBuilder builder = dc.builder();
-                tw.reset(); // drop the first empty tree, which we do not need here
-                tw.setRecursive(true);
-                tw.setFilter(TreeFilter.ALL);
-                tw.addTree(new DirCacheBuildIterator(builder));
-
-                while (tw.next()) {
-                    final FileMode mode = tw.getFileMode(0);
-                    if (mode.getObjectType() == Constants.OBJ_BLOB) {
-                        final File path = new File(repo.getWorkTree(),
-                                tw.getPathString());
-                        // Deleting a blob is simply a matter of removing
-                        // the file or symlink named by the tree entry.
-                        delete(repo, path);
+                final DirCacheBuilder builder = dc.builder();
+                for (int i = 0; i < dc.getEntryCount(); i++) {
+                    final DirCacheEntry entry = dc.getEntry(i);
+                    final File source = sources.remove(entry.getPathString());
+                    if (source == null) {
+                        delete(repo, new File(repo.getWorkTree(), entry.getPathString()));
+                    } else {
+                        builder.add(stageFile(repo, inserter, entry.getPathString(), source, entry));
                     }
                 }
+                for (final Map.Entry<String, File> source : sources.entrySet()) {
+                    builder.add(stageFile(repo, inserter, source.getKey(), source.getValue(), null));
+                }
+                inserter.flush();
                 builder.commit();
             } finally {
                 if (dc != null) {
@@ -172,6 +368,42 @@ public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCom
             return null;
         }
 
+        private DirCacheEntry stageFile(
+                Repository repo,
+                ObjectInserter inserter,
+                String path,
+                File source,
+                DirCacheEntry existing) throws IOException {
+            final File target = new File(repo.getWorkTree(), path);
+            final FS fs = repo.getFS();
+            final boolean executable = fs.supportsExecute() && fs.canExecute(source);
+            final FileMode mode = executable ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE;
+            if (existing != null && existing.getStage() == DirCacheEntry.STAGE_0 && target.isFile()) {
+                final ObjectId sourceId;
+                try (final InputStream stream = new FileInputStream(source)) {
+                    sourceId = inserter.idFor(Constants.OBJ_BLOB, source.length(), stream);
+                }
+                if (sourceId.equals(existing.getObjectId()) && mode.equals(existing.getRawMode())) {
+                    // Content and mode are unchanged, keep both the file and its index entry as they are
+                    return existing;
+                }
+            }
+
+            FileUtils.copyFile(source, target);
+            if (fs.supportsExecute()) {
+                // Copying doesn't carry the executable bit over
+                fs.setExecute(target, executable);
+            }
+            final DirCacheEntry entry = new DirCacheEntry(path);
+            entry.setFileMode(mode);
+            entry.setLength(target.length());
+            entry.setLastModified(target.lastModified());
+            try (final InputStream stream = new FileInputStream(target)) {
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, target.length(), stream));
+            }
+            return entry;
+        }
+
         private void delete(Repository repo, File p) {
             while (p != null && !p.equals(repo.getWorkTree()) && p.delete()) {
                 p = p.getParentFile();
@@ -180,27 +412,95 @@ public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCom
     }
 
     /**
-     * Copy selected files to git working directory and stage them.
+     * Build a commit of selected files directly in the object database, on top of the remote branch, and point the
+     * local branch to it. No working copy is involved.
      *
      * @param git Git client
-     * @param repo Path to git repo
      * @param sourceDir Source directory
      * @param targetDir Target directory
      * @param filesPattern Files name pattern
+     * @param message Commit message
+     * @return If a new commit is created
      * @throws IOException
      * @throws InterruptedException
      */
-    private void copyAndAddFiles(GitClient git, FilePath repo, FilePath sourceDir, String targetDir, String filesPattern)
-            throws IOException, InterruptedException {
-        final FilePath[] files = sourceDir.list(filesPattern);
-        for (final FilePath file: files) {
-            final String fileName = FilePathUtils.trimDirectoryPrefix(sourceDir, file);
-            FilePath repoPath = new FilePath(repo.child(targetDir), fileName);
-            file.copyTo(repoPath);
+    @Restricted(NoExternalUse.class)
+    static boolean commitFiles(GitClient git, FilePath sourceDir, String targetDir, String filesPattern,
+                               String message) throws IOException, InterruptedException {
+        return git.withRepository(new CommitFilesCallback(sourceDir, targetDir, filesPattern, message));
+    }
 
-            // Git always use Unix file path
-            String filePathInGit = FilenameUtils.separatorsToUnix(FilenameUtils.concat(targetDir, fileName));
-            git.add(filePathInGit);
+    private static final class CommitFilesCallback implements RepositoryCallback<Boolean> {
+        private final FilePath sourceDir;
+        private final String targetDir;
+        private final String filesPattern;
+        private final String message;
+
+        private CommitFilesCallback(FilePath sourceDir, String targetDir, String filesPattern, String message) {
+            this.sourceDir = sourceDir;
+            this.targetDir = targetDir;
+            this.filesPattern = filesPattern;
+            this.message = message;
+        }
+
+        @Override
+        public Boolean invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+            final FS fs = repo.getFS();
+            final DirCache dc = DirCache.newInCore();
+            final DirCacheBuilder builder = dc.builder();
+
+            try (final ObjectInserter inserter = repo.newObjectInserter();
+                 final RevWalk revWalk = new RevWalk(repo)) {
+                final File baseDir = new File(sourceDir.getRemote());
+                for (final FileMatcher.Match file : FileMatcher.scan(baseDir, filesPattern, null)) {
+                    // Git always use Unix file path
+                    final String filePathInGit = FilenameUtils.separatorsToUnix(
+                            FilenameUtils.concat(targetDir, file.getPath()));
+                    final File source = new File(baseDir, file.getPath());
+
+                    final DirCacheEntry entry = new DirCacheEntry(filePathInGit);
+                    entry.setFileMode(fs.supportsExecute() && fs.canExecute(source)
+                            ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE);
+                    try (final InputStream stream = new FileInputStream(source)) {
+                        entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, source.length(), stream));
+                    }
+                    builder.add(entry);
+                }
+                builder.finish();
+                final ObjectId treeId = dc.writeTree(inserter);
+
+                // Sometimes remote repository is bare and the master branch doesn't exist
+                final ObjectId remoteId = repo.resolve(Constants.R_REMOTES + DEPLOY_REMOTE_BRANCH);
+                final CommitBuilder commit = new CommitBuilder();
+                if (remoteId != null) {
+                    final RevCommit remoteCommit = revWalk.parseCommit(remoteId);
+                    if (remoteCommit.getTree().equals(treeId)) {
+                        return false;
+                    }
+                    commit.setParentId(remoteCommit);
+                }
+                final PersonIdent ident = new PersonIdent(repo);
+                commit.setTreeId(treeId);
+                commit.setAuthor(ident);
+                commit.setCommitter(ident);
+                commit.setMessage(message);
+                final ObjectId commitId = inserter.insert(commit);
+                inserter.flush();
+
+                final RefUpdate refUpdate = repo.updateRef(Constants.R_HEADS + DEPLOY_BRANCH);
+                refUpdate.setNewObjectId(commitId);
+                refUpdate.setForceUpdate(true);
+                refUpdate.setRefLogMessage("commit: " + message, false);
+                final RefUpdate.Result result = refUpdate.update(revWalk);
+                switch (result) {
+                    case NEW:
+                    case FORCED:
+                    case FAST_FORWARD:
+                        return true;
+                    default:
+                        throw new IOException(String.format("Fail to update %s: %s", DEPLOY_BRANCH, result));
+                }
+            }
         }
     }
 
@@ -212,7 +512,7 @@ public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCom
      * @throws IOException
      * @throws InterruptedException
      */
-    private boolean isWorkingTreeChanged(GitClient git) throws IOException, InterruptedException {
+    private static boolean isWorkingTreeChanged(GitClient git) throws IOException, InterruptedException {
         return git.withRepository(new IsWorkingTreeChangedCallback());
     }
 
@@ -234,5 +534,7 @@ public class GitDeployCommand implements ICommand<GitDeployCommand.IGitDeployCom
         String getSourceDirectory();
 
         String getTargetDirectory();
+
+        boolean isInMemoryGitCommit();
     }
 }
@@ -28,5 +28,7 @@ public interface IBaseCommandData {
     void setDeploymentState(DeploymentState deployState);
 
     DeploymentState getDeploymentState();
+
+    void recordTimings(DeploymentTimings timings);
 }
 
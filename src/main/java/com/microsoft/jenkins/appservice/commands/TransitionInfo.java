@@ -5,11 +5,17 @@
  */
 package com.microsoft.jenkins.appservice.commands;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 public class TransitionInfo {
 
     private ICommand<IBaseCommandData> command;
     private Class success;
     private Class fail;
+    private final Set<Class> dependencies = new LinkedHashSet<>();
 
     public ICommand<IBaseCommandData> getCommand() {
         return this.command;
@@ -23,6 +29,19 @@ public class TransitionInfo {
         return this.fail;
     }
 
+    /**
+     * Commands which must succeed before this one runs, in addition to the one transiting to it on success.
+     * Only honored by {@link com.microsoft.jenkins.services.CommandService#executeCommandGraph}.
+     */
+    public Set<Class> getDependencies() {
+        return Collections.unmodifiableSet(this.dependencies);
+    }
+
+    public TransitionInfo withDependencies(Class... commandClasses) {
+        this.dependencies.addAll(Arrays.asList(commandClasses));
+        return this;
+    }
+
     public TransitionInfo(ICommand command, Class success, Class fail) {
         this.command = command;
         this.success = success;
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.management.appservice.PublishingProfile;
+import com.microsoft.jenkins.appservice.util.FileMatcher;
+import com.microsoft.jenkins.exceptions.AzureCloudException;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.TaskListener;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Deploy files through the Kudu zip deploy API.
+ *
+ * The selected files are zipped on the fly on the agent and streamed to Kudu in a single HTTP request.
+ * The deployment runs asynchronously on Kudu and its status is polled until it completes.
+ */
+public class ZipDeployCommand implements ICommand<ZipDeployCommand.IZipDeployCommandData> {
+
+    private static final String ZIP_DEPLOY_API = "/api/zipdeploy?isAsync=true";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long POLL_INTERVAL_SECONDS = 5;
+    private static final int MAX_POLL_COUNT = 360;
+
+    // Deployment status defined in Kudu
+    private static final int STATUS_FAILED = 3;
+    private static final int STATUS_SUCCESS = 4;
+
+    @Override
+    public void execute(IZipDeployCommandData context) {
+        final FilePath workspace = context.getWorkspace();
+        final PublishingProfile pubProfile = context.getPublishingProfile();
+
+        if (workspace == null) {
+            context.logError("Workspace is null");
+            context.setDeploymentState(DeploymentState.HasError);
+            return;
+        }
+
+        try {
+            final DeploymentTimings timings = workspace.act(new ZipDeployCommandOnSlave(
+                    context.getListener(),
+                    getKuduUrl(pubProfile.gitUrl()),
+                    pubProfile.gitUsername(),
+                    pubProfile.gitPassword(),
+                    workspace,
+                    context.getSourceDirectory(),
+                    context.getTargetDirectory(),
+                    context.getFilePath()
+            ));
+            context.recordTimings(timings);
+            context.setDeploymentState(DeploymentState.Success);
+        } catch (IOException | AzureCloudException e) {
+            context.logError("Fail to deploy using zip deploy: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            context.logError("Zip deploy is interrupted");
+        }
+    }
+
+    /**
+     * Get Kudu URL from the git URL in publishing profile, e.g. myapp.scm.azurewebsites.net:443/myapp.git.
+     *
+     * @param gitUrl Git URL
+     * @return Kudu base URL
+     */
+    static String getKuduUrl(String gitUrl) {
+        String url = gitUrl;
+        String scheme = "https://";
+        if (url.matches("^\\w+://.*")) {
+            scheme = url.substring(0, url.indexOf("://") + "://".length());
+            url = url.substring(scheme.length());
+        }
+
+        if (url.indexOf("/") > 0) {
+            url = url.substring(0, url.indexOf("/"));
+        }
+        return scheme + url;
+    }
+
+    /**
+     * Resolve the status URL returned in the Location header of a zip deploy request. As the credentials are sent
+     * when polling it, it must be on the same site as the request.
+     *
+     * @param deployUrl URL of the zip deploy request
+     * @param location Location header
+     * @return Status URL
+     * @throws AzureCloudException If the status URL is on another site
+     */
+    static URL getStatusUrl(URL deployUrl, String location) throws AzureCloudException {
+        final URL statusUrl;
+        try {
+            statusUrl = new URL(deployUrl, location);
+        } catch (MalformedURLException e) {
+            throw new AzureCloudException("Invalid zip deploy status URL: " + location, e);
+        }
+
+        if (!statusUrl.getProtocol().equalsIgnoreCase(deployUrl.getProtocol())
+                || !statusUrl.getHost().equalsIgnoreCase(deployUrl.getHost())
+                || statusUrl.getPort() != deployUrl.getPort()) {
+            throw new AzureCloudException(String.format(
+                    "Refuse to send credentials to zip deploy status URL %s on another site", statusUrl));
+        }
+        return statusUrl;
+    }
+
+    private static final class ZipDeployCommandOnSlave extends MasterToSlaveCallable<DeploymentTimings, AzureCloudException> {
+
+        private final TaskListener listener;
+        private final String kuduUrl;
+        private final String userName;
+        private final String password;
+        private final FilePath workspace;
+        private final String sourceDirectory;
+        private final String targetDirectory;
+        private final String filePath;
+        private final DeploymentTimings timings = new DeploymentTimings();
+
+        private ZipDeployCommandOnSlave(
+                TaskListener listener,
+                String kuduUrl,
+                String userName,
+                String password,
+                FilePath workspace,
+                String sourceDirectory,
+                String targetDirectory,
+                String filePath) {
+            this.listener = listener;
+            this.kuduUrl = kuduUrl;
+            this.userName = userName;
+            this.password = password;
+            this.workspace = workspace;
+            this.sourceDirectory = sourceDirectory;
+            this.targetDirectory = targetDirectory;
+            this.filePath = filePath;
+        }
+
+        @Override
+        public DeploymentTimings call() throws AzureCloudException {
+            try {
+                listener.getLogger().println(String.format("Starting to deploy to %s", kuduUrl));
+
+                long start = System.nanoTime();
+                final FilePath sourceDir = workspace.child(Util.fixNull(sourceDirectory));
+                final File baseDir = new File(sourceDir.getRemote());
+                final List<FileMatcher.Match> files = FileMatcher.scan(baseDir, filePath, null);
+                timings.record("Find files", start);
+
+                start = System.nanoTime();
+
+                final URL deployUrl = new URL(kuduUrl + ZIP_DEPLOY_API);
+                final HttpURLConnection connection = openConnection(deployUrl);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("Content-Type", "application/zip");
+                connection.setDoOutput(true);
+                // Stream the zip as it's built, so it's never buffered in memory or on disk
+                connection.setChunkedStreamingMode(CHUNK_SIZE);
+
+                final CountingOutputStream output = new CountingOutputStream(connection.getOutputStream());
+                try (ZipOutputStream zip = new ZipOutputStream(output)) {
+                    for (final FileMatcher.Match file : files) {
+                        final String entryName = getEntryName(file.getPath());
+                        listener.getLogger().println(String.format("Adding %s", entryName));
+                        final ZipEntry entry = new ZipEntry(entryName);
+                        entry.setTime(file.getLastModified());
+                        zip.putNextEntry(entry);
+                        try (InputStream stream = new FileInputStream(new File(baseDir, file.getPath()))) {
+                            IOUtils.copy(stream, zip);
+                        }
+                        zip.closeEntry();
+                    }
+                }
+
+                final int responseCode = connection.getResponseCode();
+                timings.record("Zip upload", start, output.getByteCount());
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    listener.getLogger().println("Zip deploy completed");
+                    return timings;
+                } else if (responseCode != HttpURLConnection.HTTP_ACCEPTED) {
+                    throw new AzureCloudException(String.format("Zip deploy failed with HTTP %d: %s",
+                            responseCode, readError(connection)));
+                }
+
+                final String location = connection.getHeaderField("Location");
+                if (StringUtils.isBlank(location)) {
+                    listener.getLogger().println("Zip deploy accepted");
+                    return timings;
+                }
+                start = System.nanoTime();
+                waitForDeployment(getStatusUrl(deployUrl, location));
+                timings.record("Zip deploy wait", start);
+            } catch (IOException | InterruptedException e) {
+                throw new AzureCloudException(e);
+            }
+
+            return timings;
+        }
+
+        private void waitForDeployment(URL statusUrl)
+                throws IOException, InterruptedException, AzureCloudException {
+            final ObjectMapper mapper = new ObjectMapper();
+            for (int i = 0; i < MAX_POLL_COUNT; i++) {
+                final HttpURLConnection connection = openConnection(statusUrl);
+                final int responseCode = connection.getResponseCode();
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    final JsonNode status;
+                    try (InputStream stream = connection.getInputStream()) {
+                        status = mapper.readTree(stream);
+                    }
+
+                    if (status.path("complete").asBoolean()) {
+                        if (status.path("status").asInt() == STATUS_SUCCESS) {
+                            listener.getLogger().println("Zip deploy completed");
+                            return;
+                        }
+                        throw new AzureCloudException(String.format("Zip deploy failed with status %d: %s",
+                                status.path("status").asInt(), status.path("status_text").asText()));
+                    }
+                    if (status.path("status").asInt() == STATUS_FAILED) {
+                        throw new AzureCloudException("Zip deploy failed: " + status.path("status_text").asText());
+                    }
+                } else if (responseCode != HttpURLConnection.HTTP_ACCEPTED) {
+                    throw new AzureCloudException(String.format("Fail to get zip deploy status with HTTP %d: %s",
+                            responseCode, readError(connection)));
+                }
+
+                listener.getLogger().println("Waiting for zip deploy to complete");
+                TimeUnit.SECONDS.sleep(POLL_INTERVAL_SECONDS);
+            }
+
+            throw new AzureCloudException("Zip deploy didn't complete in time");
+        }
+
+        private HttpURLConnection openConnection(URL url) throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            final String auth = userName + ":" + password;
+            connection.setRequestProperty("Authorization",
+                    "Basic " + Base64.encodeBase64String(auth.getBytes(Charsets.UTF_8)));
+            return connection;
+        }
+
+        private String readError(HttpURLConnection connection) throws IOException {
+            try (InputStream stream = connection.getErrorStream()) {
+                return stream == null ? "" : IOUtils.toString(stream, Charsets.UTF_8);
+            }
+        }
+
+        private String getEntryName(String fileName) {
+            final String entryName = FilenameUtils.separatorsToUnix(
+                    FilenameUtils.concat(Util.fixNull(targetDirectory), fileName));
+            return StringUtils.removeStart(entryName, "/");
+        }
+    }
+
+    public interface IZipDeployCommandData extends IBaseCommandData {
+
+        PublishingProfile getPublishingProfile();
+
+        String getFilePath();
+
+        String getSourceDirectory();
+
+        String getTargetDirectory();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.microsoft.azure.Page;
+import com.microsoft.azure.PagedList;
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.appservice.implementation.SiteInner;
+import com.microsoft.azure.management.resources.ResourceGroup;
+import com.microsoft.azure.util.AzureCredentials;
+import hudson.model.Computer;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the Azure resource listings shown in the job configuration form, per credential and subscription.
+ *
+ * A listing read after the refresh interval is still served while it's reloaded in the background. Listings are
+ * only reloaded when they're read, and are dropped once they reach the expiry interval, once they haven't been read
+ * for the idle interval, or when there are more than {@code maxEntries} of them. These can be set with system
+ * properties named {@code com.microsoft.jenkins.appservice.util.AzureResourceCache.<setting>}.
+ */
+public final class AzureResourceCache {
+
+    private static final long REFRESH_SECONDS = Long.getLong(
+            AzureResourceCache.class.getName() + ".refreshSeconds", 60);
+    private static final long EXPIRE_SECONDS = Long.getLong(
+            AzureResourceCache.class.getName() + ".expireSeconds", 900);
+    private static final long IDLE_SECONDS = Long.getLong(
+            AzureResourceCache.class.getName() + ".idleSeconds", 300);
+    private static final long MAX_ENTRIES = Long.getLong(
+            AzureResourceCache.class.getName() + ".maxEntries", 100);
+    private static final int MAX_APPS = Integer.getInteger(
+            AzureResourceCache.class.getName() + ".maxApps", 1000);
+
+    private static final LoadingCache<Key, List<String>> RESOURCE_GROUPS = newCache(
+            new CacheLoader<Key, List<String>>() {
+                @Override
+                public List<String> load(Key key) {
+                    final List<String> names = new ArrayList<>();
+                    for (final ResourceGroup rg : key.getAzureClient().resourceGroups().list()) {
+                        names.add(rg.name());
+                    }
+                    return Collections.unmodifiableList(names);
+                }
+            });
+
+    private static final LoadingCache<Key, List<String>> WEB_APPS = newCache(
+            new CacheLoader<Key, List<String>>() {
+                @Override
+                public List<String> load(Key key) throws IOException {
+                    // https://github.com/Azure/azure-sdk-for-java/issues/1762
+                    // Walk the pages one at a time rather than PagedList.loadAll(), so that only the names are kept
+                    final PagedList<SiteInner> list = key.getAzureClient().webApps().inner()
+                            .listByResourceGroup(key.resourceGroup);
+                    final List<String> names = new ArrayList<>();
+                    Page<SiteInner> page = list.currentPage();
+                    while (page != null) {
+                        for (final SiteInner webApp : page.items()) {
+                            names.add(webApp.name());
+                        }
+                        if (names.size() >= MAX_APPS || page.nextPageLink() == null) {
+                            break;
+                        }
+                        page = list.nextPage(page.nextPageLink());
+                    }
+                    return Collections.unmodifiableList(names.size() > MAX_APPS ? names.subList(0, MAX_APPS) : names);
+                }
+            });
+
+    private AzureResourceCache() {
+        // Hide
+    }
+
+    public static List<String> getResourceGroupNames(final String azureCredentialsId) {
+        return RESOURCE_GROUPS.getUnchecked(new Key(azureCredentialsId, null));
+    }
+
+    /**
+     * Get the names of web apps in a resource group, up to a limit. The listing is cached per resource group and
+     * filtered in memory, so that typing a filter doesn't list the web apps again.
+     *
+     * @param azureCredentialsId Azure credential id
+     * @param resourceGroup Resource group name
+     * @param filter Only names containing it are returned, case-insensitively
+     * @return Web app names
+     */
+    public static List<String> getWebAppNames(final String azureCredentialsId, final String resourceGroup,
+                                              final String filter) {
+        final List<String> names = WEB_APPS.getUnchecked(new Key(azureCredentialsId, resourceGroup));
+        final String lowerCaseFilter = StringUtils.trimToEmpty(filter).toLowerCase();
+        if (lowerCaseFilter.isEmpty()) {
+            return names;
+        }
+
+        final List<String> filtered = new ArrayList<>();
+        for (final String name : names) {
+            if (name.toLowerCase().contains(lowerCaseFilter)) {
+                filtered.add(name);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Drop all listings of a credential, so that they're loaded again on next access.
+     *
+     * @param azureCredentialsId Azure credential id
+     */
+    public static void invalidate(final String azureCredentialsId) {
+        invalidate(RESOURCE_GROUPS, azureCredentialsId);
+        invalidate(WEB_APPS, azureCredentialsId);
+    }
+
+    private static void invalidate(final LoadingCache<Key, List<String>> cache, final String azureCredentialsId) {
+        final List<Key> keys = new ArrayList<>();
+        for (final Key key : cache.asMap().keySet()) {
+            if (key.azureCredentialsId.equals(azureCredentialsId)) {
+                keys.add(key);
+            }
+        }
+        cache.invalidateAll(keys);
+    }
+
+    private static LoadingCache<Key, List<String>> newCache(final CacheLoader<Key, List<String>> loader) {
+        // refreshAfterWrite only reloads an entry when it's read, so listings of abandoned forms aren't queried again
+        return CacheBuilder.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .refreshAfterWrite(REFRESH_SECONDS, TimeUnit.SECONDS)
+                .expireAfterWrite(EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .expireAfterAccess(IDLE_SECONDS, TimeUnit.SECONDS)
+                .build(CacheLoader.asyncReloading(loader, Computer.threadPoolForRemoting));
+    }
+
+    private static final class Key {
+        private final String azureCredentialsId;
+        private final String subscriptionId;
+        private final String resourceGroup;
+
+        private Key(final String azureCredentialsId, final String resourceGroup) {
+            this.azureCredentialsId = azureCredentialsId;
+            this.subscriptionId = AzureCredentials.getServicePrincipal(azureCredentialsId).getSubscriptionId();
+            this.resourceGroup = resourceGroup;
+        }
+
+        private Azure getAzureClient() {
+            return TokenCache.getInstance(AzureCredentials.getServicePrincipal(azureCredentialsId)).getAzureClient();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(azureCredentialsId, key.azureCredentialsId)
+                    && Objects.equals(subscriptionId, key.subscriptionId)
+                    && Objects.equals(resourceGroup, key.resourceGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(azureCredentialsId, subscriptionId, resourceGroup);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.appservice.util;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.lang.StringUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Select files under a directory with Ant style patterns, like {@link FilePath#list(String)}, but with a single
+ * NIO tree walk that doesn't descend into directories which can't hold any selected file, e.g. {@code node_modules}
+ * when selecting {@code target/*.war}. Ant default excludes such as {@code .git} are applied.
+ *
+ * Each match carries its path relative to the directory together with its size and modification time, so callers
+ * don't need to stat the files again.
+ */
+public final class FileMatcher {
+
+    private static final String DEEP_TREE_MATCH = File.separator + "**";
+
+    private final List<String> includes;
+    private final List<String> excludes;
+
+    private FileMatcher(List<String> includes, List<String> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Select files in a local directory.
+     *
+     * @param baseDir Directory to scan
+     * @param includes Comma separated patterns of files to select
+     * @param excludes Comma separated patterns of files to leave out, in addition to Ant default excludes
+     * @return Selected files, sorted by path
+     * @throws IOException
+     */
+    public static List<Match> scan(File baseDir, String includes, String excludes) throws IOException {
+        final List<String> excludePatterns = tokenize(excludes);
+        for (final String defaultExclude : DirectoryScanner.getDefaultExcludes()) {
+            excludePatterns.add(toPattern(defaultExclude));
+        }
+        return new FileMatcher(tokenize(includes), excludePatterns).scan(baseDir);
+    }
+
+    /**
+     * Select files in a directory on any node, in a single remoting call.
+     *
+     * @param dir Directory to scan
+     * @param includes Comma separated patterns of files to select
+     * @return Selected files, sorted by path
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static List<Match> list(FilePath dir, final String includes) throws IOException, InterruptedException {
+        return dir.act(new ListCallable(includes));
+    }
+
+    private List<Match> scan(final File baseDir) throws IOException {
+        final List<Match> matches = new ArrayList<>();
+        if (includes.isEmpty() || !baseDir.isDirectory()) {
+            return matches;
+        }
+
+        final Path basePath = baseDir.toPath();
+        Files.walkFileTree(basePath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (dir.equals(basePath)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        final String path = toPattern(basePath.relativize(dir).toString());
+                        return couldHoldIncluded(path) && !contentsExcluded(path)
+                                ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            final String path = basePath.relativize(file).toString();
+                            final String pattern = toPattern(path);
+                            if (matchesAny(includes, pattern) && !matchesAny(excludes, pattern)) {
+                                matches.add(new Match(path, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        // Unreadable files are skipped, like the Ant directory scanner does
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private boolean couldHoldIncluded(String dir) {
+        for (final String include : includes) {
+            if (SelectorUtils.matchPatternStart(include, dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contentsExcluded(String dir) {
+        for (final String exclude : excludes) {
+            if (exclude.endsWith(DEEP_TREE_MATCH)
+                    && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - DEEP_TREE_MATCH.length()), dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(List<String> patterns, String path) {
+        for (final String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> tokenize(String patterns) {
+        final List<String> tokens = new ArrayList<>();
+        for (final String token : StringUtils.split(StringUtils.defaultString(patterns), ',')) {
+            String pattern = toPattern(token.trim());
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            if (pattern.endsWith(File.separator)) {
+                // Same as Ant, "dir/" selects everything under it
+                pattern += "**";
+            }
+            tokens.add(pattern);
+        }
+        return tokens;
+    }
+
+    /**
+     * Ant matches patterns and paths using the platform file separator.
+     */
+    private static String toPattern(String path) {
+        return path.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+    }
+
+    /**
+     * A selected file.
+     */
+    public static final class Match implements Serializable, Comparable<Match> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        Match(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return Path relative to the scanned directory, with the platform file separator
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public int compareTo(Match o) {
+            return path.compareTo(o.path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Match && path.equals(((Match) o).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+
+    private static final class ListCallable extends MasterToSlaveFileCallable<List<Match>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String includes;
+
+        private ListCallable(String includes) {
+            this.includes = includes;
+        }
+
+        @Override
+        public List<Match> invoke(File f, VirtualChannel channel) throws IOException {
+            return scan(f, includes, null);
+        }
+    }
+}
@@ -9,37 +9,57 @@ import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.credentials.ApplicationTokenCredentials;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.util.AzureCredentials;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Cache of Azure clients per service principal.
+ *
+ * Each client keeps its access token between calls. Tokens are refreshed in the background before they expire, and
+ * clients not used for a while are evicted.
+ */
 public class TokenCache {
 
     private static final Logger LOGGER = Logger.getLogger(TokenCache.class.getName());
 
-    private static final Object TSAFE = new Object();
+    // Tokens issued by Azure Active Directory are valid for an hour by default
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(
+            Long.getLong(TokenCache.class.getName() + ".refreshMinutes", 45));
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(
+            Long.getLong(TokenCache.class.getName() + ".idleMinutes", 120));
 
-    private static TokenCache cache = null;
+    private static final ConcurrentMap<String, TokenCache> CACHES = new ConcurrentHashMap<>();
 
     protected final AzureCredentials.ServicePrincipal credentials;
 
+    private volatile Azure azureClient;
+    private volatile long refreshedAt;
+    private volatile long accessedAt = System.currentTimeMillis();
+
     public static TokenCache getInstance(final AzureCredentials.ServicePrincipal servicePrincipal) {
-        synchronized (TSAFE) {
+        final String key = getKey(servicePrincipal);
+        TokenCache cache = CACHES.get(key);
+        if (cache == null) {
+            final TokenCache newCache = new TokenCache(servicePrincipal);
+            cache = CACHES.putIfAbsent(key, newCache);
             if (cache == null) {
-                cache = new TokenCache(servicePrincipal);
-            } else if (cache.credentials == null
-                    || !StringUtils.isEmpty(cache.credentials.getSubscriptionId()) || !cache.credentials.getSubscriptionId().equals(servicePrincipal.getSubscriptionId())
-                    || !StringUtils.isEmpty(cache.credentials.getClientId()) || !cache.credentials.getClientId().equals(servicePrincipal.getClientId())
-                    || !StringUtils.isEmpty(cache.credentials.getClientSecret()) || !cache.credentials.getClientSecret().equals(servicePrincipal.getClientSecret())
-                    || !StringUtils.isEmpty(cache.credentials.getTenant()) || !cache.credentials.getTenant().equals(servicePrincipal.getTenant())
-                    || !StringUtils.isEmpty(cache.credentials.getServiceManagementURL()) || !cache.credentials.getServiceManagementURL().equals(servicePrincipal.getServiceManagementURL())) {
-                cache = new TokenCache(servicePrincipal);
+                cache = newCache;
             }
         }
-
+        cache.accessedAt = System.currentTimeMillis();
         return cache;
     }
 
@@ -48,6 +68,22 @@ public class TokenCache {
         this.credentials = servicePrincipal;
     }
 
+    /**
+     * The cache key covers every field of the service principal, so that an updated credential gets a new client.
+     */
+    private static String getKey(final AzureCredentials.ServicePrincipal servicePrincipal) {
+        return Util.getDigestOf(StringUtils.join(new String[]{
+                servicePrincipal.getSubscriptionId(),
+                servicePrincipal.getClientId(),
+                servicePrincipal.getClientSecret(),
+                servicePrincipal.getTenant(),
+                servicePrincipal.getServiceManagementURL(),
+                servicePrincipal.getAuthenticationEndpoint(),
+                servicePrincipal.getResourceManagerEndpoint(),
+                servicePrincipal.getGraphEndpoint(),
+        }, '\n'));
+    }
+
     public static String getUserAgent() {
         String version = null;
         String instanceId = null;
@@ -88,11 +124,70 @@ public class TokenCache {
     }
 
     public Azure getAzureClient() {
-        return Azure
+        accessedAt = System.currentTimeMillis();
+        Azure client = azureClient;
+        if (client == null) {
+            synchronized (this) {
+                client = azureClient;
+                if (client == null) {
+                    client = createAzureClient(get(credentials));
+                }
+            }
+        }
+        return client;
+    }
+
+    private synchronized Azure createAzureClient(final ApplicationTokenCredentials tokenCredentials) {
+        azureClient = Azure
                 .configure()
                 .withLogLevel(Constants.DEFAULT_AZURE_SDK_LOGGING_LEVEL)
                 .withUserAgent(getUserAgent())
-                .authenticate(get(credentials))
+                .authenticate(tokenCredentials)
                 .withSubscription(credentials.getSubscriptionId());
+        refreshedAt = System.currentTimeMillis();
+        return azureClient;
+    }
+
+    /**
+     * Acquire a new token ahead of the expiry of the current one, and switch to a client using it.
+     */
+    private void refresh() {
+        final ApplicationTokenCredentials tokenCredentials = get(credentials);
+        try {
+            tokenCredentials.getToken(credentials.getServiceManagementURL());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "TokenCache: refresh: Fail to refresh token for " + credentials.getClientId(), e);
+            return;
+        }
+        createAzureClient(tokenCredentials);
+    }
+
+    /**
+     * Refresh tokens about to expire and evict idle clients.
+     */
+    @Extension
+    public static final class Maintenance extends AsyncPeriodicWork {
+
+        public Maintenance() {
+            super("Azure App Service token cache maintenance");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(5);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            final long now = System.currentTimeMillis();
+            for (final Iterator<TokenCache> it = CACHES.values().iterator(); it.hasNext();) {
+                final TokenCache cache = it.next();
+                if (now - cache.accessedAt > IDLE_TIMEOUT) {
+                    it.remove();
+                } else if (cache.azureClient != null && now - cache.refreshedAt > REFRESH_INTERVAL) {
+                    cache.refresh();
+                }
+            }
+        }
     }
 }
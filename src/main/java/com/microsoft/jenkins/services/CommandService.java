@@ -6,14 +6,40 @@
 package com.microsoft.jenkins.services;
 
 import com.microsoft.jenkins.appservice.commands.DeploymentState;
+import com.microsoft.jenkins.appservice.commands.DeploymentTimings;
 import com.microsoft.jenkins.appservice.commands.IBaseCommandData;
 import com.microsoft.jenkins.appservice.commands.ICommand;
 import com.microsoft.jenkins.appservice.commands.TransitionInfo;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.StringUtils;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class CommandService {
 
+    private static final int DEFAULT_MAX_THREADS = Integer.getInteger(
+            CommandService.class.getName() + ".maxThreads", 4);
+
     private CommandService() {
         // Hide
     }
@@ -27,7 +53,7 @@ public final class CommandService {
             while (current != null) {
                 ICommand<IBaseCommandData> command = current.getCommand();
                 IBaseCommandData commandData = commandServiceData.getDataForCommand(command);
-                command.execute(commandData);
+                executeCommand(command, commandData);
                 TransitionInfo previous = current;
                 current = null;
 
@@ -47,4 +73,233 @@ public final class CommandService {
 
         return false;
     }
+
+    public static boolean executeCommandGraph(ICommandServiceData commandServiceData)
+            throws InterruptedException {
+        return executeCommandGraph(commandServiceData, DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * Execute the commands as a dependency graph, running the commands whose prerequisites are met in parallel.
+     *
+     * A command runs once the command transiting to it on success has succeeded, the command transiting to it on
+     * failure has been unsuccessful, and all its dependencies have succeeded. It's skipped if any of these can no
+     * longer happen. No more commands are started once a command has an error.
+     *
+     * Each command gets its own view of the command data, so that the deployment states set by concurrent commands
+     * don't race. Errors are still reported to the shared command data, including commands which can never run
+     * because of a dependency cycle.
+     *
+     * @param commandServiceData Command service data
+     * @param maxThreads Maximum number of commands running at the same time
+     * @return If all commands are executed without error
+     * @throws InterruptedException If interrupted while commands are running. Running commands are interrupted too.
+     */
+    public static boolean executeCommandGraph(final ICommandServiceData commandServiceData, int maxThreads)
+            throws InterruptedException {
+        final HashMap<Class, TransitionInfo> commands = commandServiceData.getCommands();
+        if (commands == null || commands.isEmpty()) {
+            return false;
+        }
+
+        final Map<Class, Map<Class, DeploymentState>> prerequisites = getPrerequisites(commands);
+        final Map<Class, DeploymentState> finished = new HashMap<>();
+        final Set<Class> pending = new HashSet<>(commands.keySet());
+        final Map<Future<DeploymentState>, Class> running = new HashMap<>();
+        boolean hasError = false;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, maxThreads),
+                new NamingThreadFactory(new DaemonThreadFactory(), "CommandService.executeCommandGraph"));
+        final CompletionService<DeploymentState> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            while (true) {
+                if (!hasError) {
+                    boolean changed;
+                    do {
+                        changed = false;
+                        for (final Iterator<Class> it = pending.iterator(); it.hasNext();) {
+                            final Class commandClass = it.next();
+                            final Boolean ready = isReady(prerequisites.get(commandClass), finished);
+                            if (ready == null) {
+                                continue;
+                            }
+
+                            it.remove();
+                            changed = true;
+                            if (ready) {
+                                final TransitionInfo transitionInfo = commands.get(commandClass);
+                                running.put(completionService.submit(
+                                        newCommandTask(commandServiceData, transitionInfo.getCommand())), commandClass);
+                            } else {
+                                // Skipped
+                                finished.put(commandClass, DeploymentState.Unknown);
+                            }
+                        }
+                    } while (changed);
+                }
+
+                if (running.isEmpty()) {
+                    break;
+                }
+
+                final Future<DeploymentState> future = completionService.take();
+                final Class commandClass = running.remove(future);
+                DeploymentState state;
+                try {
+                    state = future.get();
+                } catch (ExecutionException e) {
+                    state = DeploymentState.HasError;
+                }
+                finished.put(commandClass, state);
+                if (state == DeploymentState.HasError) {
+                    hasError = true;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (hasError) {
+            return false;
+        }
+        if (!pending.isEmpty()) {
+            // Commands left pending without an error are in a dependency cycle
+            final List<String> names = new ArrayList<>();
+            for (final Class commandClass : pending) {
+                names.add(commandClass.getSimpleName());
+            }
+            Collections.sort(names);
+            final ICommand<IBaseCommandData> command = commands.get(pending.iterator().next()).getCommand();
+            commandServiceData.getDataForCommand(command).logError(
+                    "Commands not executed because of a dependency cycle: " + StringUtils.join(names, ", "));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Execute a command and record the time it takes, as a phase named after the command.
+     */
+    private static void executeCommand(ICommand<IBaseCommandData> command, IBaseCommandData commandData) {
+        final long start = System.nanoTime();
+        try {
+            command.execute(commandData);
+        } finally {
+            final DeploymentTimings timings = new DeploymentTimings();
+            timings.record(command.getClass().getSimpleName(), start);
+            commandData.recordTimings(timings);
+        }
+    }
+
+    /**
+     * Get the prerequisites of each command, as the deployment state each prerequisite command must end with.
+     */
+    private static Map<Class, Map<Class, DeploymentState>> getPrerequisites(Map<Class, TransitionInfo> commands) {
+        final Map<Class, Map<Class, DeploymentState>> prerequisites = new HashMap<>();
+        for (final Class commandClass : commands.keySet()) {
+            prerequisites.put(commandClass, new HashMap<Class, DeploymentState>());
+        }
+
+        for (final Map.Entry<Class, TransitionInfo> entry : commands.entrySet()) {
+            final TransitionInfo transitionInfo = entry.getValue();
+            for (final Class dependency : transitionInfo.getDependencies()) {
+                if (commands.containsKey(dependency)) {
+                    prerequisites.get(entry.getKey()).put(dependency, DeploymentState.Success);
+                }
+            }
+            if (transitionInfo.getSuccess() != null && commands.containsKey(transitionInfo.getSuccess())) {
+                prerequisites.get(transitionInfo.getSuccess()).put(entry.getKey(), DeploymentState.Success);
+            }
+            if (transitionInfo.getFail() != null && commands.containsKey(transitionInfo.getFail())) {
+                prerequisites.get(transitionInfo.getFail()).put(entry.getKey(), DeploymentState.UnSuccessful);
+            }
+        }
+        return prerequisites;
+    }
+
+    /**
+     * @return True if the command is ready to run, false if it will never run, null if it needs to wait
+     */
+    private static Boolean isReady(Map<Class, DeploymentState> prerequisites, Map<Class, DeploymentState> finished) {
+        boolean waiting = false;
+        for (final Map.Entry<Class, DeploymentState> prerequisite : prerequisites.entrySet()) {
+            final DeploymentState state = finished.get(prerequisite.getKey());
+            if (state == null) {
+                waiting = true;
+            } else if (state != prerequisite.getValue()) {
+                return false;
+            }
+        }
+        return waiting ? null : true;
+    }
+
+    private static Callable<DeploymentState> newCommandTask(final ICommandServiceData commandServiceData,
+                                                            final ICommand<IBaseCommandData> command) {
+        return new Callable<DeploymentState>() {
+            @Override
+            public DeploymentState call() {
+                final IBaseCommandData commandData = createCommandView(commandServiceData.getDataForCommand(command));
+                try {
+                    executeCommand(command, commandData);
+                } catch (RuntimeException e) {
+                    commandData.logError("Error: ", e);
+                }
+                return commandData.getDeploymentState();
+            }
+        };
+    }
+
+    private static IBaseCommandData createCommandView(IBaseCommandData commandData) {
+        @SuppressWarnings("unchecked")
+        final List<Class> interfaces = ClassUtils.getAllInterfaces(commandData.getClass());
+        return (IBaseCommandData) Proxy.newProxyInstance(
+                commandData.getClass().getClassLoader(),
+                interfaces.toArray(new Class[interfaces.size()]),
+                new CommandDataView(commandData));
+    }
+
+    /**
+     * Keeps the deployment state of a single command, and forwards everything else to the shared command data.
+     */
+    private static final class CommandDataView implements InvocationHandler {
+        private final IBaseCommandData commandData;
+        private volatile DeploymentState deploymentState;
+
+        private CommandDataView(IBaseCommandData commandData) {
+            this.commandData = commandData;
+            this.deploymentState = commandData.getDeploymentState();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getDeploymentState":
+                    return deploymentState;
+                case "setDeploymentState":
+                    deploymentState = (DeploymentState) args[0];
+                    if (deploymentState == DeploymentState.HasError) {
+                        synchronized (commandData) {
+                            commandData.setDeploymentState(DeploymentState.HasError);
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+
+            try {
+                if (method.getName().equals("logError")) {
+                    final Object result;
+                    synchronized (commandData) {
+                        result = method.invoke(commandData, args);
+                    }
+                    deploymentState = DeploymentState.HasError;
+                    return result;
+                }
+                return method.invoke(commandData, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
 }
@@ -20,6 +20,10 @@ public class AbstractDockerCommandTest {
         public DockerClient build(AuthConfig authConfig) {
             return dockerClient;
         }
+
+        @Override
+        public void release(DockerClient client) {
+        }
     }
 
     protected AuthConfig defaultExampleAuthConfig() {
@@ -19,4 +19,38 @@ public class DefaultDockerClientBuilderTest extends AbstractDockerCommandTest {
         Assert.assertEquals(defaultExampleAuthConfig(), dockerClient.authConfig());
     }
 
+    @Test
+    public void buildReusesClient() {
+        DockerClientBuilder builder = new DefaultDockerClientBuilder(4);
+        DockerClient dockerClient = builder.build(defaultExampleAuthConfig());
+        Assert.assertSame(dockerClient, builder.build(defaultExampleAuthConfig()));
+        Assert.assertSame(dockerClient, new DefaultDockerClientBuilder(4).build(defaultExampleAuthConfig()));
+
+        // Different pool size should get a different client
+        Assert.assertNotSame(dockerClient, new DefaultDockerClientBuilder(8).build(defaultExampleAuthConfig()));
+
+        // Different registry auth should get a different client
+        DockerClient otherClient = builder.build(defaultExampleAuthConfig().withPassword("otherPassword"));
+        Assert.assertNotSame(dockerClient, otherClient);
+
+        // Closed clients should not be reused
+        DefaultDockerClientBuilder.closeAll();
+        Assert.assertNotSame(dockerClient, builder.build(defaultExampleAuthConfig()));
+    }
+
+    @Test
+    public void buildUncached() throws Exception {
+        DefaultDockerClientBuilder builder = new DefaultDockerClientBuilder(4);
+        DockerClient dockerClient = builder.build(defaultExampleAuthConfig());
+        try (DockerClient uncachedClient = builder.buildUncached(defaultExampleAuthConfig())) {
+            Assert.assertNotSame(dockerClient, uncachedClient);
+            Assert.assertEquals(defaultExampleAuthConfig(), uncachedClient.authConfig());
+        }
+
+        // Released clients stay cached until evicted
+        builder.release(dockerClient);
+        Assert.assertSame(dockerClient, builder.build(defaultExampleAuthConfig()));
+        builder.release(dockerClient);
+    }
+
 }
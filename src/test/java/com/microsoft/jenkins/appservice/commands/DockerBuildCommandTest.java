@@ -7,6 +7,13 @@ package com.microsoft.jenkins.appservice.commands;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.BuildImageCmd;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.ListImagesCmd;
+import com.github.dockerjava.api.command.RemoveImageCmd;
+import com.github.dockerjava.api.command.TagImageCmd;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Image;
 import com.github.dockerjava.core.command.BuildImageResultCallback;
 import com.google.common.io.Files;
 import hudson.FilePath;
@@ -14,6 +21,7 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.util.StreamTaskListener;
 import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -21,6 +29,8 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -36,7 +46,9 @@ public class DockerBuildCommandTest extends AbstractDockerCommandTest {
     TemporaryFolder dockerfileDir;
     List<File> dockerfiles;
     DockerClient dockerClient;
-
+    ListImagesCmd listImagesCmd;
+    InspectImageCmd inspectCacheCmd;
+    TagImageCmd cacheTagCmd;
 
     private void createTestDockerfile(int n) throws Exception {
         dockerfiles = new ArrayList<>();
@@ -72,6 +84,21 @@ public class DockerBuildCommandTest extends AbstractDockerCommandTest {
         // Mock docker client
         dockerClient = mock(DockerClient.class);
         when(commandData.getDockerClientBuilder()).thenReturn(new MockDockerClientBuilder(dockerClient));
+
+        // No image built from the same build context by default
+        listImagesCmd = mock(ListImagesCmd.class);
+        when(dockerClient.listImagesCmd()).thenReturn(listImagesCmd);
+        when(listImagesCmd.withLabelFilter(anyMap())).thenReturn(listImagesCmd);
+        when(listImagesCmd.exec()).thenReturn(new ArrayList<Image>());
+
+        // No image kept for reuse by default
+        inspectCacheCmd = mock(InspectImageCmd.class);
+        when(dockerClient.inspectImageCmd("someImage:azure-webapp-build-cache")).thenReturn(inspectCacheCmd);
+        when(inspectCacheCmd.exec()).thenThrow(new NotFoundException("not found"));
+        cacheTagCmd = mock(TagImageCmd.class);
+        when(dockerClient.tagImageCmd(anyString(), eq("someImage"), eq("azure-webapp-build-cache")))
+                .thenReturn(cacheTagCmd);
+        when(cacheTagCmd.withForce()).thenReturn(cacheTagCmd);
     }
 
     @Test
@@ -108,4 +135,59 @@ public class DockerBuildCommandTest extends AbstractDockerCommandTest {
         verify(buildImageCmd, times(1)).exec(any(BuildImageResultCallback.class));
         verify(callback, times(1)).awaitCompletion();
     }
+
+    @Test
+    public void dockerBuildCachedTest() throws Exception {
+        DockerBuildInfo dockerBuildInfo = defaultExampleBuildInfo();
+        when(commandData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+        createTestDockerfile(1);
+
+        Image image = mock(Image.class);
+        when(image.getId()).thenReturn("sha256:cached");
+        when(listImagesCmd.exec()).thenReturn(Collections.singletonList(image));
+        TagImageCmd tagImageCmd = mock(TagImageCmd.class);
+        when(dockerClient.tagImageCmd("sha256:cached", "someImage", "someTag")).thenReturn(tagImageCmd);
+
+        command.execute(commandData);
+
+        verify(dockerClient, never()).buildImageCmd(any(File.class));
+        verify(tagImageCmd, times(1)).exec();
+        verify(dockerClient, times(1)).tagImageCmd("sha256:cached", "someImage", "azure-webapp-build-cache");
+        verify(cacheTagCmd, times(1)).exec();
+        verify(commandData, times(1)).setDeploymentState(DeploymentState.Success);
+        Assert.assertEquals("sha256:cached", dockerBuildInfo.getImageId());
+    }
+
+    @Test
+    public void dockerBuildCachedNewestTest() throws Exception {
+        DockerBuildInfo dockerBuildInfo = defaultExampleBuildInfo();
+        when(commandData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+        createTestDockerfile(1);
+
+        Image older = mock(Image.class);
+        when(older.getId()).thenReturn("sha256:older");
+        when(older.getCreated()).thenReturn(1000L);
+        Image newer = mock(Image.class);
+        when(newer.getId()).thenReturn("sha256:newer");
+        when(newer.getCreated()).thenReturn(2000L);
+        when(listImagesCmd.exec()).thenReturn(Arrays.asList(older, newer, older));
+        TagImageCmd tagImageCmd = mock(TagImageCmd.class);
+        when(dockerClient.tagImageCmd("sha256:newer", "someImage", "someTag")).thenReturn(tagImageCmd);
+
+        // The previously kept image is released once another one is kept
+        reset(inspectCacheCmd);
+        InspectImageResponse cached = mock(InspectImageResponse.class);
+        when(cached.getId()).thenReturn("sha256:older");
+        when(inspectCacheCmd.exec()).thenReturn(cached);
+        RemoveImageCmd removeImageCmd = mock(RemoveImageCmd.class);
+        when(dockerClient.removeImageCmd("sha256:older")).thenReturn(removeImageCmd);
+
+        command.execute(commandData);
+
+        verify(tagImageCmd, times(1)).exec();
+        verify(cacheTagCmd, times(1)).exec();
+        verify(removeImageCmd, times(1)).exec();
+        verify(removeImageCmd, never()).withForce(anyBoolean());
+        Assert.assertEquals("sha256:newer", dockerBuildInfo.getImageId());
+    }
 }
@@ -7,19 +7,46 @@
 package com.microsoft.jenkins.appservice.commands;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.command.InspectImageResponse;
 import com.github.dockerjava.api.command.PushImageCmd;
+import com.github.dockerjava.api.command.RemoveImageCmd;
+import com.github.dockerjava.api.model.AuthConfig;
 import com.github.dockerjava.core.command.PushImageResultCallback;
 import com.google.common.io.Files;
+import com.microsoft.jenkins.appservice.WebAppDeploymentRecorder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.util.StreamTaskListener;
+import org.apache.commons.io.Charsets;
+import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -27,17 +54,28 @@ import static org.mockito.Mockito.*;
  */
 public class DockerPushCommandTest extends AbstractDockerCommandTest {
 
+    private static final char[] KEYSTORE_PASSWORD = "changeit".toCharArray();
+
     DockerPushCommand command;
     DockerPushCommand.IDockerPushCommandData commandData;
     DockerClient dockerClient;
+    InspectImageResponse inspectImageResponse;
+
+    SSLContext sslContext;
+    SSLSocketFactory defaultSocketFactory;
 
     @Before
-    public void setup() {
+    public void setup() throws Exception {
         command = new DockerPushCommand();
         commandData = mock(DockerPushCommand.IDockerPushCommandData.class);
         dockerClient = mock(DockerClient.class);
         when(commandData.getDockerClientBuilder()).thenReturn(new MockDockerClientBuilder(dockerClient));
 
+        InspectImageCmd inspectImageCmd = mock(InspectImageCmd.class);
+        inspectImageResponse = mock(InspectImageResponse.class);
+        when(dockerClient.inspectImageCmd(anyString())).thenReturn(inspectImageCmd);
+        when(inspectImageCmd.exec()).thenReturn(inspectImageResponse);
+
         // Create workspace
         File workspaceDir = Files.createTempDir();
         workspaceDir.deleteOnExit();
@@ -47,6 +85,26 @@ public class DockerPushCommandTest extends AbstractDockerCommandTest {
         // Mock task listener
         final TaskListener listener = new StreamTaskListener(System.out, Charset.defaultCharset());
         when(commandData.getListener()).thenReturn(listener);
+
+        // Registries are served over HTTPS with a self-signed certificate trusted by the client
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream stream = getClass().getResourceAsStream("registry.jks")) {
+            keyStore.load(stream, KEYSTORE_PASSWORD);
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        defaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+    }
+
+    @After
+    public void tearDown() {
+        HttpsURLConnection.setDefaultSSLSocketFactory(defaultSocketFactory);
     }
 
     @Test
@@ -69,4 +127,179 @@ public class DockerPushCommandTest extends AbstractDockerCommandTest {
         verify(callback, times(1)).awaitSuccess();
         verify(commandData, times(1)).setDeploymentState(DeploymentState.Success);
     }
+
+    @Test
+    public void dockerPushSkippedTest() throws Exception {
+        final Registry registry = new Registry(createHttpsServer());
+        try {
+            DockerBuildInfo dockerBuildInfo = registry.buildInfo("https");
+            when(commandData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+            when(inspectImageResponse.getRepoDigests()).thenReturn(registry.repoDigests());
+
+            command.execute(commandData);
+
+            verify(dockerClient, never()).pushImageCmd(anyString());
+            verify(commandData, times(1)).setDeploymentState(DeploymentState.Success);
+            Assert.assertEquals("/v2/someUser/someImage/manifests/someTag", registry.putTag);
+            // Credentials are only sent in response to the challenge
+            Assert.assertNull(registry.authorizations.get(0));
+            Assert.assertEquals(1, registry.tokenRequests);
+        } finally {
+            registry.server.stop(0);
+        }
+    }
+
+    @Test
+    public void dockerPushSkippedAfterCleanupTest() throws Exception {
+        // The intermediate image is removed by default
+        Assert.assertTrue(new WebAppDeploymentRecorder("cred", "app", "rg").isDeleteTempImage());
+
+        final Registry registry = new Registry(createHttpsServer());
+        try {
+            DockerBuildInfo dockerBuildInfo = registry.buildInfo("https");
+            dockerBuildInfo.setImageId("sha256:cached");
+            when(commandData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+            when(inspectImageResponse.getRepoDigests()).thenReturn(registry.repoDigests());
+
+            // Cleanup of a previous build only removes its tag, so the image kept for reuse still has its digest
+            DockerRemoveImageCommand.IDockerRemoveImageCommandData removeData =
+                    mock(DockerRemoveImageCommand.IDockerRemoveImageCommandData.class);
+            when(removeData.getWorkspace()).thenReturn(commandData.getWorkspace());
+            when(removeData.getDockerClientBuilder()).thenReturn(new MockDockerClientBuilder(dockerClient));
+            when(removeData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+            RemoveImageCmd removeImageCmd = mock(RemoveImageCmd.class);
+            when(dockerClient.removeImageCmd(command.imageAndTag(dockerBuildInfo))).thenReturn(removeImageCmd);
+
+            new DockerRemoveImageCommand().execute(removeData);
+
+            verify(removeImageCmd, times(1)).exec();
+            verify(removeImageCmd, never()).withForce(anyBoolean());
+            verify(dockerClient, never()).removeImageCmd("sha256:cached");
+
+            command.execute(commandData);
+
+            verify(dockerClient, never()).pushImageCmd(anyString());
+            verify(commandData, times(1)).setDeploymentState(DeploymentState.Success);
+            Assert.assertEquals("/v2/someUser/someImage/manifests/someTag", registry.putTag);
+        } finally {
+            registry.server.stop(0);
+        }
+    }
+
+    @Test
+    public void dockerPushInsecureRegistryTest() throws Exception {
+        final Registry registry = new Registry(HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+        try {
+            DockerBuildInfo dockerBuildInfo = registry.buildInfo("http");
+            when(commandData.getDockerBuildInfo()).thenReturn(dockerBuildInfo);
+            when(inspectImageResponse.getRepoDigests()).thenReturn(registry.repoDigests());
+
+            PushImageCmd pushImageCmd = mock(PushImageCmd.class);
+            when(dockerClient.pushImageCmd(command.imageAndTag(dockerBuildInfo))).thenReturn(pushImageCmd);
+            when(pushImageCmd.withTag(dockerBuildInfo.getDockerImageTag())).thenReturn(pushImageCmd);
+            PushImageResultCallback callback = mock(PushImageResultCallback.class);
+            when(pushImageCmd.exec(any(PushImageResultCallback.class))).thenReturn(callback);
+
+            command.execute(commandData);
+
+            // No credentials over plain HTTP, so the image is pushed as usual
+            verify(pushImageCmd, times(1)).exec(any(PushImageResultCallback.class));
+            Assert.assertEquals(0, registry.tokenRequests);
+            Assert.assertEquals(Collections.singletonList(null), registry.authorizations);
+            Assert.assertNull(registry.putTag);
+        } finally {
+            registry.server.stop(0);
+        }
+    }
+
+    @Test
+    public void getRegistryUrl() {
+        Assert.assertEquals("https://registry-1.docker.io",
+                DockerRegistryClient.getRegistryUrl(AuthConfig.DEFAULT_SERVER_ADDRESS));
+        Assert.assertEquals("https://myacr.azurecr.io", DockerRegistryClient.getRegistryUrl("myacr.azurecr.io"));
+        Assert.assertEquals("http://localhost:5000", DockerRegistryClient.getRegistryUrl("http://localhost:5000/"));
+
+        Assert.assertEquals("library/nginx",
+                DockerRegistryClient.getRepository("https://registry-1.docker.io", "nginx"));
+        Assert.assertEquals("user/app",
+                DockerRegistryClient.getRepository("https://myacr.azurecr.io", "myacr.azurecr.io/user/app"));
+    }
+
+    private HttpsServer createHttpsServer() throws Exception {
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        return server;
+    }
+
+    /**
+     * A registry holding the manifest of someUser/someImage, which asks for a bearer token.
+     */
+    private static final class Registry {
+        private static final String DIGEST = "sha256:0123456789abcdef";
+        private static final byte[] MANIFEST = ("{\"schemaVersion\":2,\"config\":{\"size\":100},"
+                + "\"layers\":[{\"size\":1000},{\"size\":2000}]}").getBytes(Charsets.UTF_8);
+
+        private final HttpServer server;
+        private final String host;
+        private final List<String> authorizations = new ArrayList<>();
+        private int tokenRequests;
+        private String putTag;
+
+        private Registry(HttpServer server) {
+            this.server = server;
+            this.host = "localhost:" + server.getAddress().getPort();
+            final String scheme = server instanceof HttpsServer ? "https" : "http";
+
+            server.createContext("/token", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    tokenRequests++;
+                    byte[] body = "{\"token\":\"abc\"}".getBytes(Charsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                    exchange.close();
+                }
+            });
+            server.createContext("/v2/someUser/someImage/manifests/", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                    authorizations.add(authorization);
+                    if (!"Bearer abc".equals(authorization)) {
+                        exchange.getResponseHeaders().add("WWW-Authenticate", String.format(
+                                "Bearer realm=\"%s://%s/token\",service=\"registry\",scope=\"repository:someUser/someImage:pull\"",
+                                scheme, host));
+                        exchange.sendResponseHeaders(401, -1);
+                    } else if (exchange.getRequestURI().getPath().endsWith("/" + DIGEST)) {
+                        exchange.getResponseHeaders().add("Content-Type", DockerRegistryClient.MANIFEST_V2);
+                        exchange.sendResponseHeaders(200, MANIFEST.length);
+                        exchange.getResponseBody().write(MANIFEST);
+                    } else if ("PUT".equals(exchange.getRequestMethod())) {
+                        putTag = exchange.getRequestURI().getPath();
+                        exchange.sendResponseHeaders(201, -1);
+                    } else {
+                        exchange.sendResponseHeaders(404, -1);
+                    }
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        private List<String> repoDigests() {
+            return Collections.singletonList(host + "/someUser/someImage@" + DIGEST);
+        }
+
+        private DockerBuildInfo buildInfo(String scheme) {
+            return new DockerBuildInfo()
+                    .withDockerfile("**/Dockerfile")
+                    .withDockerImage(host + "/someUser/someImage")
+                    .withDockerImageTag("someTag")
+                    .withLinuxFxVersion("DOCKER|foo/bar:tag")
+                    .withAuthConfig(new AuthConfig()
+                            .withRegistryAddress(scheme + "://" + host)
+                            .withUsername("someUser")
+                            .withPassword("somePassword"));
+        }
+    }
 }
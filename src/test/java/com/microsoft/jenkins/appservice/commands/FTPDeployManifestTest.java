@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.commands;
+
+import org.apache.commons.io.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class FTPDeployManifestTest {
+
+    @Test
+    public void writeAndRead() throws Exception {
+        final FTPDeployManifest manifest = new FTPDeployManifest();
+        manifest.put("webapps/ROOT.war", "0123456789abcdef0123456789abcdef", 100);
+        manifest.put("dir with space/f.txt", "fedcba9876543210fedcba9876543210", 0);
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        manifest.write(stream);
+        final FTPDeployManifest read = FTPDeployManifest.read(new ByteArrayInputStream(stream.toByteArray()));
+
+        Assert.assertEquals(manifest.getPaths(), read.getPaths());
+        Assert.assertTrue(read.isUpToDate("webapps/ROOT.war", "0123456789ABCDEF0123456789ABCDEF", 100));
+        Assert.assertTrue(read.isUpToDate("dir with space/f.txt", "fedcba9876543210fedcba9876543210", 0));
+    }
+
+    @Test
+    public void isUpToDate() {
+        final FTPDeployManifest manifest = new FTPDeployManifest();
+        manifest.put("f.txt", "0123456789abcdef0123456789abcdef", 10);
+
+        Assert.assertTrue(manifest.isUpToDate("f.txt", "0123456789abcdef0123456789abcdef", 10));
+        Assert.assertFalse(manifest.isUpToDate("f.txt", "0123456789abcdef0123456789abcdef", 11));
+        Assert.assertFalse(manifest.isUpToDate("f.txt", "fedcba9876543210fedcba9876543210", 10));
+        Assert.assertFalse(manifest.isUpToDate("g.txt", "0123456789abcdef0123456789abcdef", 10));
+
+        manifest.remove("f.txt");
+        Assert.assertFalse(manifest.isUpToDate("f.txt", "0123456789abcdef0123456789abcdef", 10));
+    }
+
+    @Test(expected = IOException.class)
+    public void readMalformed() throws Exception {
+        FTPDeployManifest.read(new ByteArrayInputStream("not a manifest line\n".getBytes(Charsets.UTF_8)));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.jenkins.appservice.commands.AbstractCommandContext;
+import com.microsoft.jenkins.appservice.commands.DeploymentState;
+import com.microsoft.jenkins.appservice.commands.IBaseCommandData;
+import com.microsoft.jenkins.appservice.commands.ICommand;
+import com.microsoft.jenkins.appservice.commands.TransitionInfo;
+import com.microsoft.jenkins.services.CommandService;
+import hudson.util.StreamTaskListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CommandServiceTest {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void executeCommandGraph() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+        commands.put(StartCommand.class, new TransitionInfo(new TestCommand("start", DeploymentState.Success, null),
+                FirstCommand.class, null));
+        commands.put(FirstCommand.class, new TransitionInfo(new TestCommand("first", DeploymentState.Success, latch),
+                null, null));
+        commands.put(SecondCommand.class, new TransitionInfo(new TestCommand("second", DeploymentState.Success, latch),
+                null, null).withDependencies(StartCommand.class));
+        commands.put(EndCommand.class, new TransitionInfo(new TestCommand("end", DeploymentState.Success, null),
+                null, null).withDependencies(FirstCommand.class, SecondCommand.class));
+
+        final TestContext context = new TestContext(commands);
+        Assert.assertTrue(CommandService.executeCommandGraph(context, 2));
+
+        // First and second commands wait for each other, so they must run concurrently
+        Assert.assertEquals(4, executed.size());
+        Assert.assertEquals("start", executed.get(0));
+        Assert.assertTrue(executed.subList(1, 3).containsAll(Arrays.asList("first", "second")));
+        Assert.assertEquals("end", executed.get(3));
+        Assert.assertFalse(context.getHasError());
+        Assert.assertEquals(DeploymentState.Running, context.getDeploymentState());
+
+        // Each command is timed as a phase named after its class
+        Assert.assertEquals(1, context.getTimings().getPhases().size());
+        Assert.assertEquals("TestCommand", context.getTimings().getPhases().get(0).getName());
+        Assert.assertEquals(4, context.getTimings().getPhases().get(0).getCount());
+    }
+
+    @Test
+    public void executeCommandGraphWithFailTransition() throws Exception {
+        final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+        commands.put(StartCommand.class, new TransitionInfo(new TestCommand("start", DeploymentState.UnSuccessful, null),
+                FirstCommand.class, SecondCommand.class));
+        commands.put(FirstCommand.class, new TransitionInfo(new TestCommand("first", DeploymentState.Success, null),
+                null, null));
+        commands.put(SecondCommand.class, new TransitionInfo(new TestCommand("second", DeploymentState.Success, null),
+                null, null));
+
+        final TestContext context = new TestContext(commands);
+        Assert.assertTrue(CommandService.executeCommandGraph(context, 2));
+        Assert.assertEquals(Arrays.asList("start", "second"), executed);
+    }
+
+    @Test
+    public void executeCommandGraphWithError() throws Exception {
+        final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+        commands.put(StartCommand.class, new TransitionInfo(new TestCommand("start", DeploymentState.HasError, null),
+                null, null));
+        commands.put(FirstCommand.class, new TransitionInfo(new TestCommand("first", DeploymentState.Success, null),
+                null, null).withDependencies(StartCommand.class));
+
+        final TestContext context = new TestContext(commands);
+        Assert.assertFalse(CommandService.executeCommandGraph(context, 2));
+        Assert.assertEquals(Collections.singletonList("start"), executed);
+        Assert.assertTrue(context.getHasError());
+    }
+
+    @Test
+    public void executeCommandGraphWithCycle() throws Exception {
+        final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+        commands.put(StartCommand.class, new TransitionInfo(new TestCommand("start", DeploymentState.Success, null),
+                FirstCommand.class, null).withDependencies(FirstCommand.class));
+        commands.put(FirstCommand.class, new TransitionInfo(new TestCommand("first", DeploymentState.Success, null),
+                null, null));
+
+        final TestContext context = new TestContext(commands);
+        Assert.assertFalse(CommandService.executeCommandGraph(context, 2));
+        Assert.assertTrue(executed.isEmpty());
+        Assert.assertTrue(context.getHasError());
+    }
+
+    @Test
+    public void executeCommandGraphInterrupted() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch released = new CountDownLatch(1);
+        final HashMap<Class, TransitionInfo> commands = new HashMap<>();
+        commands.put(StartCommand.class, new TransitionInfo(new ICommand<IBaseCommandData>() {
+            @Override
+            public void execute(IBaseCommandData context) {
+                caller.interrupt();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    // Interrupted by the command service as expected
+                    released.countDown();
+                }
+            }
+        }, null, null));
+
+        try {
+            CommandService.executeCommandGraph(new TestContext(commands), 2);
+            Assert.fail("Interruption is not propagated");
+        } catch (InterruptedException e) {
+            // Expected
+        }
+        Assert.assertTrue(released.await(10, TimeUnit.SECONDS));
+    }
+
+    private static final class StartCommand {
+    }
+
+    private static final class FirstCommand {
+    }
+
+    private static final class SecondCommand {
+    }
+
+    private static final class EndCommand {
+    }
+
+    private final class TestCommand implements ICommand<IBaseCommandData> {
+        private final String name;
+        private final DeploymentState state;
+        private final CountDownLatch latch;
+
+        private TestCommand(String name, DeploymentState state, CountDownLatch latch) {
+            this.name = name;
+            this.state = state;
+            this.latch = latch;
+        }
+
+        @Override
+        public void execute(IBaseCommandData context) {
+            executed.add(name);
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    if (!latch.await(10, TimeUnit.SECONDS)) {
+                        context.logError("Timed out waiting for the other command");
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    context.logError("Interrupted");
+                    return;
+                }
+            }
+            context.setDeploymentState(state);
+        }
+    }
+
+    private static final class TestContext extends AbstractCommandContext implements IBaseCommandData {
+        private TestContext(HashMap<Class, TransitionInfo> commands) {
+            configure(null, null, new StreamTaskListener(System.out, Charset.defaultCharset()), commands, null);
+            setDeploymentState(DeploymentState.Running);
+        }
+
+        @Override
+        public IBaseCommandData getDataForCommand(ICommand command) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.jenkins.appservice.DeploymentTimingAction;
+import com.microsoft.jenkins.appservice.commands.DeploymentTimings;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class DeploymentTimingActionTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void exposedThroughRemoteApi() throws Exception {
+        final FreeStyleProject project = j.createFreeStyleProject();
+        final FreeStyleBuild build = j.buildAndAssertSuccess(project);
+
+        final DeploymentTimings timings = new DeploymentTimings();
+        timings.record("FTP upload", System.nanoTime(), 100);
+        DeploymentTimingAction.get(build).add("rg/app", timings);
+
+        final String json = j.createWebClient()
+                .goTo(build.getUrl() + "azureWebAppDeployment/api/json", "application/json")
+                .getWebResponse().getContentAsString();
+
+        final JSONArray targets = JSONObject.fromObject(json).getJSONArray("targets");
+        Assert.assertEquals(1, targets.size());
+        Assert.assertEquals("rg/app", targets.getJSONObject(0).getString("name"));
+        final JSONObject phase = targets.getJSONObject(0).getJSONArray("phases").getJSONObject(0);
+        Assert.assertEquals("FTP upload", phase.getString("name"));
+        Assert.assertEquals(1, phase.getInt("count"));
+        Assert.assertEquals(100, phase.getLong("bytes"));
+        Assert.assertTrue(phase.has("durationNanos"));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.jenkins.appservice.commands.DeploymentTimings;
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class DeploymentTimingsTest {
+
+    @Test
+    public void record() {
+        final DeploymentTimings timings = new DeploymentTimings();
+        final long start = System.nanoTime();
+        timings.record("FTP login", start);
+        timings.record("FTP upload", start, 100);
+        timings.record("FTP upload", start, 50);
+
+        final List<DeploymentTimings.Phase> phases = timings.getPhases();
+        Assert.assertEquals(2, phases.size());
+        Assert.assertEquals("FTP login", phases.get(0).getName());
+        Assert.assertEquals(1, phases.get(0).getCount());
+        Assert.assertEquals(0, phases.get(0).getBytes());
+        Assert.assertEquals("FTP upload", phases.get(1).getName());
+        Assert.assertEquals(2, phases.get(1).getCount());
+        Assert.assertEquals(150, phases.get(1).getBytes());
+        Assert.assertTrue(phases.get(1).getDurationNanos() > 0);
+    }
+
+    @Test
+    public void addAll() {
+        final DeploymentTimings timings = new DeploymentTimings();
+        timings.record("Git push", System.nanoTime());
+
+        final DeploymentTimings other = new DeploymentTimings();
+        other.record("Git push", System.nanoTime());
+        other.record("Git commit", System.nanoTime());
+
+        timings.addAll(other);
+        timings.addAll(null);
+
+        final List<DeploymentTimings.Phase> phases = timings.getPhases();
+        Assert.assertEquals(2, phases.size());
+        Assert.assertEquals(2, phases.get(0).getCount());
+        Assert.assertEquals("Git commit", phases.get(1).getName());
+    }
+
+    @Test
+    public void serialize() {
+        final DeploymentTimings timings = new DeploymentTimings();
+        timings.record("FTP upload", System.nanoTime(), 10);
+
+        final DeploymentTimings copy = (DeploymentTimings) SerializationUtils.clone(timings);
+        Assert.assertEquals(1, copy.getPhases().size());
+        Assert.assertEquals(10, copy.getPhases().get(0).getBytes());
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.azure.management.appservice.PublishingProfile;
+import com.microsoft.jenkins.appservice.commands.FTPDeployCommand;
+import com.microsoft.jenkins.appservice.commands.FTPTransferProfile;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.command.CommandNames;
+import org.mockftpserver.core.command.ReplyCodes;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.command.StorCommandHandler;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FTPDeployCommandTest {
+
+    private static final String FTP_USER = "user";
+    private static final String FTP_PASSWORD = "password";
+    private static final String MAX_ATTEMPTS_PROPERTY = FTPDeployCommand.class.getName() + ".maxAttempts";
+    private static final String RETRY_DELAY_PROPERTY = FTPDeployCommand.class.getName() + ".retryDelay";
+
+    @Rule
+    public TemporaryFolder workspaceDir = new TemporaryFolder();
+
+    private FakeFtpServer ftpServer;
+    private FileSystem fileSystem;
+    private FTPDeployCommand command;
+    private FTPDeployCommand.IFTPDeployCommandData commandData;
+
+    @Before
+    public void setUp() {
+        fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/site/wwwroot/webapps"));
+
+        ftpServer = new FakeFtpServer();
+        ftpServer.setServerControlPort(0);
+        ftpServer.addUserAccount(new UserAccount(FTP_USER, FTP_PASSWORD, "/"));
+        ftpServer.setFileSystem(fileSystem);
+        ftpServer.start();
+
+        final PublishingProfile pubProfile = mock(PublishingProfile.class);
+        when(pubProfile.ftpUrl()).thenReturn("ftp://localhost:" + ftpServer.getServerControlPort() + "/site/wwwroot");
+        when(pubProfile.ftpUsername()).thenReturn(FTP_USER);
+        when(pubProfile.ftpPassword()).thenReturn(FTP_PASSWORD);
+
+        command = new FTPDeployCommand();
+        commandData = mock(FTPDeployCommand.IFTPDeployCommandData.class);
+        final TaskListener listener = new StreamTaskListener(System.out, Charset.defaultCharset());
+        when(commandData.getListener()).thenReturn(listener);
+        when(commandData.getRun()).thenReturn(mock(Run.class));
+        when(commandData.getWorkspace()).thenReturn(new FilePath(workspaceDir.getRoot()));
+        when(commandData.getPublishingProfile()).thenReturn(pubProfile);
+        when(commandData.getFtpTransferProfile()).thenReturn(new FTPTransferProfile());
+    }
+
+    @After
+    public void tearDown() {
+        ftpServer.stop();
+    }
+
+    @Test
+    public void uploadWithMultipleConnections() throws Exception {
+        final int fileCount = 20;
+        for (int i = 0; i < fileCount; i++) {
+            FileUtils.write(new File(workspaceDir.getRoot(), "f" + i + ".txt"), "content" + i);
+        }
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        when(commandData.getFtpConnections()).thenReturn(4);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        for (int i = 0; i < fileCount; i++) {
+            final FileEntry entry = (FileEntry) fileSystem.getEntry("/site/wwwroot/f" + i + ".txt");
+            Assert.assertNotNull(entry);
+            Assert.assertEquals(("content" + i).length(), entry.getSize());
+        }
+    }
+
+    @Test
+    public void uploadTomcatRootWar() throws Exception {
+        fileSystem.add(new FileEntry("/site/wwwroot/webapps/ROOT/index.jsp", "old"));
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/ROOT.war"), "war");
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/other.txt"), "other");
+        when(commandData.getFilePath()).thenReturn("webapps/*");
+        when(commandData.getFtpConnections()).thenReturn(2);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/webapps/ROOT"));
+        Assert.assertTrue(fileSystem.exists("/site/wwwroot/webapps/ROOT.war"));
+        Assert.assertTrue(fileSystem.exists("/site/wwwroot/webapps/other.txt"));
+    }
+
+    @Test
+    public void uploadTomcatRootWarRemovesLargeTree() throws Exception {
+        addRemoteTree("/site/wwwroot/webapps/ROOT");
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/ROOT.war"), "war");
+        when(commandData.getFilePath()).thenReturn("webapps/*");
+        when(commandData.getFtpConnections()).thenReturn(4);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/webapps/ROOT"));
+        Assert.assertEquals("war", readRemoteFile("/site/wwwroot/webapps/ROOT.war"));
+        // The moved tree is gone once the deployment returns
+        Assert.assertEquals(Collections.singletonList("wwwroot"), fileSystem.listNames("/site"));
+    }
+
+    @Test
+    public void uploadTomcatRootWarWithSingleConnection() throws Exception {
+        addRemoteTree("/site/wwwroot/webapps/ROOT");
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/ROOT.war"), "war");
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/other.txt"), "other");
+        when(commandData.getFilePath()).thenReturn("webapps/*");
+        when(commandData.getFtpConnections()).thenReturn(1);
+
+        command.execute(commandData);
+
+        // The removal waits for the upload to give its only connection back
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/webapps/ROOT"));
+        Assert.assertEquals("war", readRemoteFile("/site/wwwroot/webapps/ROOT.war"));
+        Assert.assertEquals(Collections.singletonList("wwwroot"), fileSystem.listNames("/site"));
+    }
+
+    @Test
+    public void uploadTomcatRootWarWithoutRename() throws Exception {
+        ftpServer.setCommandHandler(CommandNames.RNFR, new StaticReplyCommandHandler(ReplyCodes.READ_FILE_ERROR));
+        addRemoteTree("/site/wwwroot/webapps/ROOT");
+        FileUtils.write(new File(workspaceDir.getRoot(), "webapps/ROOT.war"), "war");
+        when(commandData.getFilePath()).thenReturn("webapps/*");
+        when(commandData.getFtpConnections()).thenReturn(4);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/webapps/ROOT"));
+        Assert.assertEquals("war", readRemoteFile("/site/wwwroot/webapps/ROOT.war"));
+    }
+
+    @Test
+    public void uploadNestedDirectories() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "top.txt"), "top");
+        FileUtils.write(new File(workspaceDir.getRoot(), "a/b/c/deep.txt"), "deep");
+        FileUtils.write(new File(workspaceDir.getRoot(), "a/b/middle.txt"), "middle");
+        FileUtils.write(new File(workspaceDir.getRoot(), "a/other/x.txt"), "x");
+        when(commandData.getFilePath()).thenReturn("**/*.txt");
+        when(commandData.getTargetDirectory()).thenReturn("app/v1");
+        when(commandData.getFtpConnections()).thenReturn(2);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertEquals("top", readRemoteFile("/site/wwwroot/app/v1/top.txt"));
+        Assert.assertEquals("deep", readRemoteFile("/site/wwwroot/app/v1/a/b/c/deep.txt"));
+        Assert.assertEquals("middle", readRemoteFile("/site/wwwroot/app/v1/a/b/middle.txt"));
+        Assert.assertEquals("x", readRemoteFile("/site/wwwroot/app/v1/a/other/x.txt"));
+
+        // Directories which already exist are reused by the next deployment
+        FileUtils.write(new File(workspaceDir.getRoot(), "a/b/c/deep.txt"), "deeper");
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        Assert.assertEquals("deeper", readRemoteFile("/site/wwwroot/app/v1/a/b/c/deep.txt"));
+    }
+
+    @Test
+    public void incrementalDeploy() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "unchanged.txt"), "unchanged");
+        FileUtils.write(new File(workspaceDir.getRoot(), "changed.txt"), "v1");
+        FileUtils.write(new File(workspaceDir.getRoot(), "removed.txt"), "removed");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        when(commandData.isIncrementalDeploy()).thenReturn(true);
+        when(commandData.isDeleteStaleFiles()).thenReturn(true);
+
+        command.execute(commandData);
+        verify(commandData, never()).logError(anyString());
+        Assert.assertTrue(fileSystem.exists("/site/wwwroot/.azure-deploy-manifest"));
+
+        // Mark the remote copy so that we can tell whether it is uploaded again
+        fileSystem.delete("/site/wwwroot/unchanged.txt");
+        fileSystem.add(new FileEntry("/site/wwwroot/unchanged.txt", "remote"));
+        FileUtils.write(new File(workspaceDir.getRoot(), "changed.txt"), "v2");
+        new File(workspaceDir.getRoot(), "removed.txt").delete();
+
+        command.execute(commandData);
+        verify(commandData, never()).logError(anyString());
+        Assert.assertEquals("remote", readRemoteFile("/site/wwwroot/unchanged.txt"));
+        Assert.assertEquals("v2", readRemoteFile("/site/wwwroot/changed.txt"));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/removed.txt"));
+    }
+
+    @Test
+    public void stagedDeploy() throws Exception {
+        fileSystem.add(new FileEntry("/site/wwwroot/app/old.txt", "old"));
+        fileSystem.add(new FileEntry("/site/wwwroot/app/same.txt", "v1"));
+        fileSystem.add(new FileEntry("/site/wwwroot/other.txt", "other"));
+        FileUtils.write(new File(workspaceDir.getRoot(), "same.txt"), "v2");
+        FileUtils.write(new File(workspaceDir.getRoot(), "lib/new.txt"), "new");
+        when(commandData.getFilePath()).thenReturn("**/*.txt");
+        when(commandData.getTargetDirectory()).thenReturn("app");
+        when(commandData.getFtpConnections()).thenReturn(2);
+        when(commandData.isStagedDeploy()).thenReturn(true);
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertEquals("v2", readRemoteFile("/site/wwwroot/app/same.txt"));
+        Assert.assertEquals("new", readRemoteFile("/site/wwwroot/app/lib/new.txt"));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/app/old.txt"));
+        Assert.assertEquals("other", readRemoteFile("/site/wwwroot/other.txt"));
+        // Neither the staging directory nor the old tree is left behind
+        Assert.assertEquals(Collections.singletonList("wwwroot"), fileSystem.listNames("/site"));
+    }
+
+    @Test
+    public void stagedDeployFailureKeepsSite() throws Exception {
+        ftpServer.setCommandHandler(CommandNames.RNTO, new StaticReplyCommandHandler(ReplyCodes.READ_FILE_ERROR));
+        fileSystem.add(new FileEntry("/site/wwwroot/app/old.txt", "old"));
+        FileUtils.write(new File(workspaceDir.getRoot(), "new.txt"), "new");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        when(commandData.getTargetDirectory()).thenReturn("app");
+        when(commandData.isStagedDeploy()).thenReturn(true);
+
+        command.execute(commandData);
+
+        verify(commandData).logError(anyString());
+        Assert.assertEquals("old", readRemoteFile("/site/wwwroot/app/old.txt"));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/app/new.txt"));
+        Assert.assertEquals(Collections.singletonList("wwwroot"), fileSystem.listNames("/site"));
+    }
+
+    @Test
+    public void stagedDeployRejectsSiteRoot() throws Exception {
+        fileSystem.add(new FileEntry("/site/wwwroot/old.txt", "old"));
+        FileUtils.write(new File(workspaceDir.getRoot(), "new.txt"), "new");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        when(commandData.getTargetDirectory()).thenReturn("/");
+        when(commandData.isStagedDeploy()).thenReturn(true);
+
+        command.execute(commandData);
+
+        verify(commandData).logError(anyString());
+        Assert.assertEquals("old", readRemoteFile("/site/wwwroot/old.txt"));
+        Assert.assertFalse(fileSystem.exists("/site/wwwroot/new.txt"));
+        Assert.assertEquals(Collections.singletonList("wwwroot"), fileSystem.listNames("/site"));
+    }
+
+    @Test
+    public void resumeInterruptedUpload() throws Exception {
+        final byte[] content = new byte[100 * 1024];
+        new Random(0).nextBytes(content);
+        FileUtils.writeByteArrayToFile(new File(workspaceDir.getRoot(), "app.war"), content);
+        final DroppingStorCommandHandler storHandler = new DroppingStorCommandHandler(2);
+        ftpServer.setCommandHandler(CommandNames.STOR, storHandler);
+        when(commandData.getFilePath()).thenReturn("*.war");
+
+        System.setProperty(RETRY_DELAY_PROPERTY, "10");
+        try {
+            command.execute(commandData);
+        } finally {
+            System.clearProperty(RETRY_DELAY_PROPERTY);
+        }
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        // The first STOR was cut off, the rest of the file was appended after reconnecting
+        Assert.assertEquals(1, storHandler.getInvocations());
+        final FileEntry entry = (FileEntry) fileSystem.getEntry("/site/wwwroot/app.war");
+        try (InputStream stream = entry.createInputStream()) {
+            Assert.assertArrayEquals(content, IOUtils.toByteArray(stream));
+        }
+    }
+
+    @Test
+    public void restartUploadOverStaleRemoteFile() throws Exception {
+        // A shorter copy from a previous deployment must not be taken for a partial upload
+        fileSystem.add(new FileEntry("/site/wwwroot/app.war", "old"));
+        final byte[] content = new byte[100 * 1024];
+        new Random(0).nextBytes(content);
+        FileUtils.writeByteArrayToFile(new File(workspaceDir.getRoot(), "app.war"), content);
+        final DroppingStorCommandHandler storHandler = new DroppingStorCommandHandler(1, true);
+        ftpServer.setCommandHandler(CommandNames.STOR, storHandler);
+        when(commandData.getFilePath()).thenReturn("*.war");
+
+        System.setProperty(RETRY_DELAY_PROPERTY, "10");
+        try {
+            command.execute(commandData);
+        } finally {
+            System.clearProperty(RETRY_DELAY_PROPERTY);
+        }
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData, never()).logError(any(Exception.class));
+        Assert.assertEquals(2, storHandler.getInvocations());
+        final FileEntry entry = (FileEntry) fileSystem.getEntry("/site/wwwroot/app.war");
+        try (InputStream stream = entry.createInputStream()) {
+            Assert.assertArrayEquals(content, IOUtils.toByteArray(stream));
+        }
+    }
+
+    @Test
+    public void giveUpAfterMaxAttempts() throws Exception {
+        // Nothing of a single byte file reaches the server, so every attempt starts over with STOR
+        FileUtils.write(new File(workspaceDir.getRoot(), "app.war"), "w");
+        final DroppingStorCommandHandler storHandler = new DroppingStorCommandHandler(Integer.MAX_VALUE);
+        ftpServer.setCommandHandler(CommandNames.STOR, storHandler);
+        when(commandData.getFilePath()).thenReturn("*.war");
+
+        System.setProperty(RETRY_DELAY_PROPERTY, "10");
+        System.setProperty(MAX_ATTEMPTS_PROPERTY, "3");
+        try {
+            command.execute(commandData);
+        } finally {
+            System.clearProperty(RETRY_DELAY_PROPERTY);
+            System.clearProperty(MAX_ATTEMPTS_PROPERTY);
+        }
+
+        verify(commandData).logError(anyString());
+        Assert.assertEquals(3, storHandler.getInvocations());
+    }
+
+    private void addRemoteTree(String root) {
+        for (int i = 0; i < 5; i++) {
+            fileSystem.add(new DirectoryEntry(root + "/dir" + i + "/sub"));
+            for (int j = 0; j < 20; j++) {
+                fileSystem.add(new FileEntry(root + "/dir" + i + "/f" + j + ".jsp", "old"));
+                fileSystem.add(new FileEntry(root + "/dir" + i + "/sub/f" + j + ".class", "old"));
+            }
+        }
+        fileSystem.add(new FileEntry(root + "/index.jsp", "old"));
+    }
+
+    private String readRemoteFile(String path) throws IOException {
+        final FileEntry entry = (FileEntry) fileSystem.getEntry(path);
+        try (InputStream stream = entry.createInputStream()) {
+            return IOUtils.toString(stream, "UTF-8");
+        }
+    }
+
+    /**
+     * STOR handler which drops the control connection a given number of times, either right away or after storing
+     * only the first half of the data it receives.
+     */
+    private static final class DroppingStorCommandHandler extends StorCommandHandler {
+
+        private final AtomicInteger drops;
+        private final boolean beforeTransfer;
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        DroppingStorCommandHandler(int drops) {
+            this(drops, false);
+        }
+
+        DroppingStorCommandHandler(int drops, boolean beforeTransfer) {
+            this.drops = new AtomicInteger(drops);
+            this.beforeTransfer = beforeTransfer;
+        }
+
+        int getInvocations() {
+            return invocations.get();
+        }
+
+        @Override
+        protected void handle(Command command, Session session) {
+            invocations.incrementAndGet();
+            if (drops.getAndDecrement() <= 0) {
+                super.handle(command, session);
+                return;
+            }
+
+            if (beforeTransfer) {
+                session.close();
+                return;
+            }
+
+            verifyLoggedIn(session);
+            final String path = getRealPath(session, command.getRequiredParameter(0));
+            sendReply(session, ReplyCodes.TRANSFER_DATA_INITIAL_OK);
+            session.openDataConnection();
+            final byte[] contents = session.readData();
+            session.closeDataConnection();
+
+            if (getFileSystem().exists(path)) {
+                getFileSystem().delete(path);
+            }
+            final FileEntry file = new FileEntry(path);
+            file.setContents(Arrays.copyOf(contents, contents.length / 2));
+            getFileSystem().add(file);
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.jenkins.appservice.util.FileMatcher;
+import hudson.FilePath;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FileMatcherTest {
+
+    @Rule
+    public TemporaryFolder workspaceDir = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = workspaceDir.getRoot();
+        FileUtils.write(new File(root, "a.txt"), "a");
+        FileUtils.write(new File(root, "b.bak"), "b");
+        FileUtils.write(new File(root, "deep/c.txt"), "cc");
+        FileUtils.write(new File(root, "deep/deeper/d.txt"), "ddd");
+        FileUtils.write(new File(root, "target/app.war"), "war");
+        FileUtils.write(new File(root, "node_modules/m/index.js"), "js");
+        FileUtils.write(new File(root, ".git/config"), "config");
+        FileUtils.write(new File(root, "deep/.svn/entries"), "entries");
+    }
+
+    @Test
+    public void scan() throws IOException {
+        assertScan("**/*.txt", null, "a.txt", "deep/c.txt", "deep/deeper/d.txt");
+        assertScan("*.txt", null, "a.txt");
+        assertScan("deep/", null, "deep/c.txt", "deep/deeper/d.txt");
+        assertScan("target/*.war, *.bak", null, "b.bak", "target/app.war");
+        assertScan("**/*.txt", "deep/deeper/**", "a.txt", "deep/c.txt");
+        assertScan("**/*.txt", "**/c.txt", "a.txt", "deep/deeper/d.txt");
+        assertScan("**/*.war", null, "target/app.war");
+        assertScan("missing/*", null);
+        assertScan("", null);
+    }
+
+    @Test
+    public void scanDefaultExcludes() throws IOException {
+        assertScan("**/*", "node_modules/**",
+                "a.txt", "b.bak", "deep/c.txt", "deep/deeper/d.txt", "target/app.war");
+    }
+
+    @Test
+    public void scanSizeAndLastModified() throws IOException {
+        final File file = new File(root, "deep/deeper/d.txt");
+        file.setLastModified(1000000000000L);
+
+        final List<FileMatcher.Match> matches = FileMatcher.scan(root, "deep/deeper/*", null);
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals(3, matches.get(0).getSize());
+        Assert.assertEquals(file.lastModified(), matches.get(0).getLastModified());
+    }
+
+    @Test
+    public void scanMissingDirectory() throws IOException {
+        Assert.assertTrue(FileMatcher.scan(new File(root, "missing"), "**/*", null).isEmpty());
+    }
+
+    @Test
+    public void list() throws Exception {
+        final List<FileMatcher.Match> matches = FileMatcher.list(new FilePath(root), "**/*.war");
+        Assert.assertEquals(1, matches.size());
+        Assert.assertEquals("target/app.war", FilenameUtils.separatorsToUnix(matches.get(0).getPath()));
+    }
+
+    private void assertScan(String includes, String excludes, String... expected) throws IOException {
+        final List<String> paths = new ArrayList<>();
+        for (final FileMatcher.Match match : FileMatcher.scan(root, includes, excludes)) {
+            paths.add(FilenameUtils.separatorsToUnix(match.getPath()));
+        }
+        Assert.assertEquals(Arrays.asList(expected), paths);
+    }
+}
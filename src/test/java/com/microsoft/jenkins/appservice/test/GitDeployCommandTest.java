@@ -6,17 +6,24 @@
 package com.microsoft.jenkins.appservice.test;
 
 import hudson.FilePath;
+import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
+import hudson.util.StreamTaskListener;
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.IndexDiff;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FS;
 import org.jenkinsci.plugins.gitclient.Git;
 import org.jenkinsci.plugins.gitclient.GitClient;
 import org.jenkinsci.plugins.gitclient.RepositoryCallback;
 import com.microsoft.jenkins.appservice.commands.GitDeployCommand;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -32,7 +39,7 @@ public class GitDeployCommandTest {
     public TemporaryFolder workspace = new TemporaryFolder();
 
     @Test
-    public void cleanWorkingDirectory() throws Exception {
+    public void copyAndAddFilesWithExistingFiles() throws Exception {
         GitDeployCommand command = new GitDeployCommand();
         File repo = workspace.newFolder("repo");
         GitClient git = Git.with(null, null)
@@ -51,25 +58,72 @@ public class GitDeployCommandTest {
 
         git.commit("c1");
 
-        Whitebox.invokeMethod(command, "cleanWorkingDirectory", git);
+        final long lastModified = 1000000000000L;
+        new File(repo, "f1.txt").setLastModified(lastModified);
 
-        // Files on disk should be removed
-        Assert.assertFalse(new File(repo, "f1.txt").exists());
-        Assert.assertFalse(new File(repo, "f2.txt").exists());
+        File src = workspace.newFolder("src");
+        FileUtils.write(new File(src, "f1.txt"), "f1");
+        FileUtils.write(new File(src, "f2.txt"), "f2 changed");
+
+        Whitebox.invokeMethod(command, "copyAndAddFiles",
+                git, new FilePath(repo), new FilePath(src), "", "**/*.txt");
+
+        // Unchanged file should be left untouched
+        Assert.assertEquals(lastModified, new File(repo, "f1.txt").lastModified());
+        Assert.assertEquals("f2 changed", FileUtils.readFileToString(new File(repo, "f2.txt")));
+        // File no longer present should be removed from disk
         Assert.assertFalse(new File(deepDir, "f3.txt").exists());
 
-        // Files in Git should be removed
         git.withRepository(new RepositoryCallback<Void>() {
             @Override
             public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
                 FileTreeIterator workingTreeIt = new FileTreeIterator(repo);
                 IndexDiff diff = new IndexDiff(repo, Constants.HEAD, workingTreeIt);
                 diff.diff();
-                Set<String> removed = diff.getRemoved();
 
-                Assert.assertTrue(removed.contains("f1.txt"));
-                Assert.assertTrue(removed.contains("f2.txt"));
-                Assert.assertTrue(removed.contains("deep/f3.txt"));
+                Assert.assertFalse(diff.getChanged().contains("f1.txt"));
+                Assert.assertTrue(diff.getChanged().contains("f2.txt"));
+                Assert.assertTrue(diff.getRemoved().contains("deep/f3.txt"));
+                Assert.assertTrue(diff.getModified().isEmpty());
+
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void copyAndAddFilesWithModeChange() throws Exception {
+        Assume.assumeTrue(FS.DETECTED.supportsExecute());
+
+        GitDeployCommand command = new GitDeployCommand();
+        File repo = workspace.newFolder("repo");
+        GitClient git = Git.with(null, null)
+                .in(repo)
+                .getClient();
+        git.init();
+        FileUtils.write(new File(repo, "run.sh"), "echo run");
+        git.add("run.sh");
+        git.commit("c1");
+
+        File src = workspace.newFolder("src");
+        File script = new File(src, "run.sh");
+        FileUtils.write(script, "echo run");
+        FS.DETECTED.setExecute(script, true);
+
+        Whitebox.invokeMethod(command, "copyAndAddFiles",
+                git, new FilePath(repo), new FilePath(src), "", "**/*.sh");
+
+        // Only the executable bit changed, which should still be staged
+        Assert.assertTrue(FS.DETECTED.canExecute(new File(repo, "run.sh")));
+        git.withRepository(new RepositoryCallback<Void>() {
+            @Override
+            public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+                FileTreeIterator workingTreeIt = new FileTreeIterator(repo);
+                IndexDiff diff = new IndexDiff(repo, Constants.HEAD, workingTreeIt);
+                diff.diff();
+
+                Assert.assertTrue(diff.getChanged().contains("run.sh"));
+                Assert.assertTrue(diff.getModified().isEmpty());
 
                 return null;
             }
@@ -242,5 +296,87 @@ public class GitDeployCommandTest {
         Assert.assertTrue(changed);
     }
 
+    @Test
+    public void prepareDeployRepository() throws Exception {
+        GitDeployCommand command = new GitDeployCommand();
+        File remote = workspace.newFolder("remote");
+        GitClient remoteGit = Git.with(null, null)
+                .in(remote)
+                .getClient();
+        remoteGit.init();
+        FileUtils.write(new File(remote, "f1.txt"), "f1");
+        remoteGit.add("f1.txt");
+        remoteGit.commit("c1");
+
+        File repo = workspace.newFolder("repo");
+        GitClient git = Git.with(null, null)
+                .in(repo)
+                .getClient();
+        TaskListener listener = StreamTaskListener.fromStdout();
+
+        // No cache yet, should clone
+        Whitebox.invokeMethod(command, "prepareDeployRepository",
+                git, new FilePath(repo), remote.getAbsolutePath(), listener);
+        Assert.assertTrue(new File(repo, ".git").isDirectory());
+        Assert.assertEquals(remoteGit.revParse("HEAD"), git.revParse("origin/master"));
+
+        // Cache exists, should fetch new commits
+        FileUtils.write(new File(remote, "f2.txt"), "f2");
+        remoteGit.add("f2.txt");
+        remoteGit.commit("c2");
+        Whitebox.invokeMethod(command, "prepareDeployRepository",
+                git, new FilePath(repo), remote.getAbsolutePath(), listener);
+        Assert.assertEquals(remoteGit.revParse("HEAD"), git.revParse("origin/master"));
+    }
+
+    @Test
+    public void commitFiles() throws Exception {
+        GitDeployCommand command = new GitDeployCommand();
+        File remote = workspace.newFolder("remote");
+        GitClient remoteGit = Git.with(null, null)
+                .in(remote)
+                .getClient();
+        remoteGit.init();
+        FileUtils.write(new File(remote, "f1.txt"), "f1");
+        remoteGit.add("f1.txt");
+        remoteGit.commit("c1");
+
+        File repo = workspace.newFolder("repo");
+        final GitClient git = Git.with(null, null)
+                .in(repo)
+                .getClient();
+        Whitebox.invokeMethod(command, "prepareDeployRepository",
+                git, new FilePath(repo), remote.getAbsolutePath(), StreamTaskListener.fromStdout());
+
+        // Same content as remote, nothing to commit
+        File src = workspace.newFolder("src");
+        FileUtils.write(new File(src, "f1.txt"), "f1");
+        boolean committed = Whitebox.<Boolean>invokeMethod(command, "commitFiles",
+                git, new FilePath(src), "", "**/*.txt", "c2");
+        Assert.assertFalse(committed);
+
+        FileUtils.write(new File(src, "deep/f2.txt"), "f2");
+        committed = Whitebox.<Boolean>invokeMethod(command, "commitFiles",
+                git, new FilePath(src), "target", "**/*.txt", "c2");
+        Assert.assertTrue(committed);
+
+        // Nothing should be written to the working copy
+        Assert.assertFalse(new File(repo, "target").exists());
 
+        git.withRepository(new RepositoryCallback<Void>() {
+            @Override
+            public Void invoke(Repository repo, VirtualChannel channel) throws IOException, InterruptedException {
+                try (RevWalk revWalk = new RevWalk(repo)) {
+                    RevCommit commit = revWalk.parseCommit(repo.resolve("refs/heads/master"));
+                    Assert.assertEquals("c2", commit.getFullMessage());
+                    Assert.assertEquals(1, commit.getParentCount());
+                    Assert.assertEquals(repo.resolve("refs/remotes/origin/master"), commit.getParent(0).getId());
+                    Assert.assertNotNull(TreeWalk.forPath(repo, "target/f1.txt", commit.getTree()));
+                    Assert.assertNotNull(TreeWalk.forPath(repo, "target/deep/f2.txt", commit.getTree()));
+                    Assert.assertNull(TreeWalk.forPath(repo, "f1.txt", commit.getTree()));
+                }
+                return null;
+            }
+        });
+    }
 }
@@ -11,6 +11,7 @@ import hudson.FilePath;
 import hudson.model.Run;
 import hudson.model.StreamBuildListener;
 import com.microsoft.jenkins.appservice.commands.FTPDeployCommand;
+import com.microsoft.jenkins.appservice.commands.FTPTransferProfile;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -77,6 +78,7 @@ public class ITFTPDeployCommand extends IntegrationTest {
         final Run run = mock(Run.class);
         when(commandDataMock.getRun()).thenReturn(run);
         when(commandDataMock.getWorkspace()).thenReturn(workspace);
+        when(commandDataMock.getFtpTransferProfile()).thenReturn(new FTPTransferProfile());
     }
 
     /**
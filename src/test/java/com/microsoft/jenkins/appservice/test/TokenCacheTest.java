@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.azure.util.AzureCredentials;
+import com.microsoft.jenkins.appservice.util.TokenCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenCacheTest {
+
+    @Test
+    public void getInstance() {
+        final TokenCache cache = TokenCache.getInstance(createServicePrincipal("sub1", "secret"));
+        Assert.assertSame(cache, TokenCache.getInstance(createServicePrincipal("sub1", "secret")));
+
+        // Multiple service principals are cached at the same time
+        final TokenCache otherCache = TokenCache.getInstance(createServicePrincipal("sub2", "secret"));
+        Assert.assertNotSame(cache, otherCache);
+        Assert.assertSame(cache, TokenCache.getInstance(createServicePrincipal("sub1", "secret")));
+
+        // Updated credential should get a new cache
+        Assert.assertNotSame(cache, TokenCache.getInstance(createServicePrincipal("sub1", "newSecret")));
+    }
+
+    private AzureCredentials.ServicePrincipal createServicePrincipal(String subscriptionId, String clientSecret) {
+        return new AzureCredentials.ServicePrincipal(
+                subscriptionId,
+                "clientId",
+                clientSecret,
+                "https://login.windows.net/tenant/oauth2/token",
+                "https://management.core.windows.net/",
+                "https://login.microsoftonline.com/",
+                "https://management.azure.com/",
+                "https://graph.windows.net/");
+    }
+}
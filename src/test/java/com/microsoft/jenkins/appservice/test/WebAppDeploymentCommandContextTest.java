@@ -19,6 +19,8 @@ import java.io.File;
 import java.util.HashMap;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class WebAppDeploymentCommandContextTest {
@@ -87,6 +89,15 @@ public class WebAppDeploymentCommandContextTest {
         Assert.assertEquals(1, commands.size());
         Assert.assertEquals(ctx.getStartCommandClass().getName(), FTPDeployCommand.class.getName());
 
+        // Zip deploy
+        ctx.setZipDeploy(true);
+        ctx.configure(run, workspace, listener, app);
+        commands = ctx.getCommands();
+        Assert.assertTrue(commands.containsKey(ZipDeployCommand.class));
+        Assert.assertEquals(1, commands.size());
+        Assert.assertEquals(ctx.getStartCommandClass().getName(), ZipDeployCommand.class.getName());
+        ctx.setZipDeploy(false);
+
         // Docker
         ctx.setPublishType(WebAppDeploymentCommandContext.PUBLISH_TYPE_DOCKER);
         ctx.configure(run, workspace, listener, app);
@@ -100,6 +111,20 @@ public class WebAppDeploymentCommandContextTest {
         Assert.assertEquals(ctx.getStartCommandClass().getName(), DockerBuildCommand.class.getName());
     }
 
+    @Test
+    public void configureDockerWithoutPublishingProfile() throws AzureCloudException {
+        WebAppDeploymentCommandContext ctx = new WebAppDeploymentCommandContext("sample.war");
+        ctx.setPublishType(WebAppDeploymentCommandContext.PUBLISH_TYPE_DOCKER);
+        ctx.setSlotName("staging");
+
+        final WebApp app = mock(WebApp.class);
+        ctx.configure(mock(Run.class), new FilePath(new File("workspace")), mock(TaskListener.class), app);
+
+        verify(app, never()).getPublishingProfile();
+        verify(app, never()).deploymentSlots();
+        Assert.assertNull(ctx.getPublishingProfile());
+    }
+
     @Test
     public void configureSlot() throws AzureCloudException {
         final Run run = mock(Run.class);
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.jenkins.appservice.WebAppDeploymentRecorder;
+import com.microsoft.jenkins.appservice.WebAppDeploymentTarget;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class WebAppDeploymentRecorderTest {
+
+    @Test
+    public void getTargets() {
+        final WebAppDeploymentRecorder recorder = new WebAppDeploymentRecorder("cred", "app", "rg");
+        recorder.setSlotName("staging");
+        Assert.assertEquals(1, recorder.getTargets().size());
+        Assert.assertEquals("rg/app/staging", recorder.getTargets().get(0).toString());
+
+        final WebAppDeploymentTarget second = new WebAppDeploymentTarget("rg2", "app2");
+        final WebAppDeploymentTarget third = new WebAppDeploymentTarget("rg3", "app3");
+        third.setSlotName("slot");
+        recorder.setAdditionalTargets(Arrays.asList(second, third));
+
+        final List<WebAppDeploymentTarget> targets = recorder.getTargets();
+        Assert.assertEquals(3, targets.size());
+        Assert.assertEquals("rg/app/staging", targets.get(0).toString());
+        Assert.assertEquals("rg2/app2", targets.get(1).toString());
+        Assert.assertEquals("rg3/app3/slot", targets.get(2).toString());
+    }
+
+    @Test
+    public void targetParallelism() {
+        final WebAppDeploymentRecorder recorder = new WebAppDeploymentRecorder("cred", "app", "rg");
+        Assert.assertEquals(4, recorder.getTargetParallelism());
+        recorder.setTargetParallelism(10);
+        Assert.assertEquals(10, recorder.getTargetParallelism());
+        recorder.setTargetParallelism(0);
+        Assert.assertEquals(4, recorder.getTargetParallelism());
+    }
+}
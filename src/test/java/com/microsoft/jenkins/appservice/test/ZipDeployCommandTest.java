@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+package com.microsoft.jenkins.appservice.test;
+
+import com.microsoft.azure.management.appservice.PublishingProfile;
+import com.microsoft.jenkins.appservice.commands.DeploymentState;
+import com.microsoft.jenkins.appservice.commands.ZipDeployCommand;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ZipDeployCommandTest {
+
+    @Rule
+    public TemporaryFolder workspaceDir = new TemporaryFolder();
+
+    private HttpServer kuduServer;
+    private String baseUrl;
+    private final Map<String, String> receivedEntries = new HashMap<>();
+    private String receivedAuthorization;
+    private int deploymentStatus;
+    private String location;
+    private int statusRequests;
+
+    private ZipDeployCommand command;
+    private ZipDeployCommand.IZipDeployCommandData commandData;
+
+    @Before
+    public void setUp() throws IOException {
+        kuduServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        baseUrl = "http://localhost:" + kuduServer.getAddress().getPort();
+        kuduServer.createContext("/api/zipdeploy", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+                try (ZipInputStream zip = new ZipInputStream(exchange.getRequestBody())) {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        receivedEntries.put(entry.getName(), IOUtils.toString(zip, Charsets.UTF_8));
+                    }
+                }
+                exchange.getResponseHeaders().add("Location", location);
+                exchange.sendResponseHeaders(202, -1);
+                exchange.close();
+            }
+        });
+        kuduServer.createContext("/api/deployments/latest", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                statusRequests++;
+                final byte[] body = String.format("{\"complete\":true,\"status\":%d,\"status_text\":\"\"}",
+                        deploymentStatus).getBytes(Charsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream stream = exchange.getResponseBody()) {
+                    stream.write(body);
+                }
+            }
+        });
+        kuduServer.start();
+        location = baseUrl + "/api/deployments/latest";
+
+        final PublishingProfile pubProfile = mock(PublishingProfile.class);
+        when(pubProfile.gitUrl()).thenReturn(baseUrl + "/app.git");
+        when(pubProfile.gitUsername()).thenReturn("$app");
+        when(pubProfile.gitPassword()).thenReturn("password");
+
+        command = new ZipDeployCommand();
+        commandData = mock(ZipDeployCommand.IZipDeployCommandData.class);
+        final TaskListener listener = new StreamTaskListener(System.out, Charset.defaultCharset());
+        when(commandData.getListener()).thenReturn(listener);
+        when(commandData.getRun()).thenReturn(mock(Run.class));
+        when(commandData.getWorkspace()).thenReturn(new FilePath(workspaceDir.getRoot()));
+        when(commandData.getPublishingProfile()).thenReturn(pubProfile);
+    }
+
+    @After
+    public void tearDown() {
+        kuduServer.stop(0);
+    }
+
+    @Test
+    public void deploy() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "target/f1.txt"), "f1");
+        FileUtils.write(new File(workspaceDir.getRoot(), "target/deep/f2.txt"), "f2");
+        FileUtils.write(new File(workspaceDir.getRoot(), "target/exclude.bak"), "exclude");
+        when(commandData.getSourceDirectory()).thenReturn("target");
+        when(commandData.getTargetDirectory()).thenReturn("webapps");
+        when(commandData.getFilePath()).thenReturn("**/*.txt");
+        deploymentStatus = 4;
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData).setDeploymentState(DeploymentState.Success);
+        Assert.assertEquals(2, receivedEntries.size());
+        Assert.assertEquals("f1", receivedEntries.get("webapps/f1.txt"));
+        Assert.assertEquals("f2", receivedEntries.get("webapps/deep/f2.txt"));
+        Assert.assertEquals("Basic " + Base64.encodeBase64String("$app:password".getBytes(Charsets.UTF_8)),
+                receivedAuthorization);
+    }
+
+    @Test
+    public void deployFailed() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "f1.txt"), "f1");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        deploymentStatus = 3;
+
+        command.execute(commandData);
+
+        verify(commandData).logError(anyString());
+        verify(commandData, never()).setDeploymentState(DeploymentState.Success);
+    }
+
+    @Test
+    public void deployWithRelativeStatusUrl() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "f1.txt"), "f1");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        location = "/api/deployments/latest";
+        deploymentStatus = 4;
+
+        command.execute(commandData);
+
+        verify(commandData, never()).logError(anyString());
+        verify(commandData).setDeploymentState(DeploymentState.Success);
+        Assert.assertEquals(1, statusRequests);
+    }
+
+    @Test
+    public void deployWithForeignStatusUrl() throws Exception {
+        FileUtils.write(new File(workspaceDir.getRoot(), "f1.txt"), "f1");
+        when(commandData.getFilePath()).thenReturn("*.txt");
+        location = "http://127.0.0.2:" + kuduServer.getAddress().getPort() + "/api/deployments/latest";
+        deploymentStatus = 4;
+
+        command.execute(commandData);
+
+        verify(commandData).logError(anyString());
+        verify(commandData, never()).setDeploymentState(DeploymentState.Success);
+        Assert.assertEquals(0, statusRequests);
+    }
+}